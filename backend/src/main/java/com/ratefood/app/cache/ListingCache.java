@@ -0,0 +1,307 @@
+package com.ratefood.app.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratefood.app.dto.response.CacheStatsDTO;
+import com.ratefood.app.dto.response.PageResponseDTO;
+import com.ratefood.app.index.CityIndex;
+import com.ratefood.app.index.CityKey;
+import com.ratefood.app.index.TagIndex;
+import com.ratefood.app.routing.ReplicaSet;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of listing pages, bounded by the total number of rows held and evicted in LRU order.
+ * Every city has a version that is bumped whenever its restaurants or dishes change, which drops the
+ * city's pages and keeps a page loaded before the change from being stored after it. Only cities the city
+ * index knows get a version; pages of any other name are not cached.
+ * With read replicas, requests pinned to the primary to read their own writes bypass the cache, and a
+ * page read from a replica is only stored once the city's last change is older than the read-your-writes
+ * window, the time replicas are given to catch up; until then it may predate the change.
+ * Versions are local to the instance, so pages also expire a maximum age after they were loaded; that age
+ * bounds how long a change made through another instance can go unseen here.
+ * Cached pages also answer conditional requests before any query runs, their entity tag being the
+ * digest of the page taken once per entry.
+ * Hits, misses and size are published as {@code ratefood.cache.listing.*} meters.
+ */
+@Component
+public class ListingCache {
+
+    // version of a name that is no city
+    private static final long UNKNOWN = -1;
+    // 128 of the digest's 256 bits
+    private static final int ETAG_BYTES = 16;
+
+    @Autowired
+    private CityIndex cityIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // null without read replicas, every page is then read from the primary
+    @Autowired(required = false)
+    private ReplicaSet replicaSet;
+
+    @Value("${ratefood.cache.listing.max-rows:20000}")
+    private long maxRows;
+
+    @Value("${ratefood.cache.listing.max-age-ms:30000}")
+    private long maxAgeMillis;
+
+    @Value("${ratefood.datasource.read-your-writes-ms:3000}")
+    private long replicaLagMillis;
+
+    // access ordered, guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Set<Key>> keysByCity = new HashMap<>();
+    private long rows;
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    // System.nanoTime() of each city's last invalidation
+    private final Map<String, Long> invalidated = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @PostConstruct
+    public void registerMeters() {
+        FunctionCounter.builder("ratefood.cache.listing.requests", hits, LongAdder::sum)
+                .description("Listing page lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("ratefood.cache.listing.requests", misses, LongAdder::sum)
+                .description("Listing page lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("ratefood.cache.listing.requests", bypasses, LongAdder::sum)
+                .description("Listing page lookups")
+                .tag("result", "bypass")
+                .register(meterRegistry);
+        FunctionCounter.builder("ratefood.cache.listing.evictions", evictions, LongAdder::sum)
+                .description("Pages evicted to stay within the row bound")
+                .register(meterRegistry);
+        FunctionCounter.builder("ratefood.cache.listing.invalidations", invalidations, LongAdder::sum)
+                .description("City invalidations")
+                .register(meterRegistry);
+        Gauge.builder("ratefood.cache.listing.entries", this, cache -> cache.stats().getEntries())
+                .description("Pages held")
+                .register(meterRegistry);
+        Gauge.builder("ratefood.cache.listing.rows", this, cache -> cache.stats().getRows())
+                .description("Rows held across all pages")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> PageResponseDTO<T> get(Key key, Supplier<PageResponseDTO<T>> loader) {
+        // a cached page may be older than the client's own write, and the load happens on the primary
+        if (replicaSet != null && ReplicaSet.pinned()) {
+            bypasses.increment();
+            return loader.get();
+        }
+        synchronized (this) {
+            Entry entry = fresh(key);
+            if (entry != null) {
+                hits.increment();
+                return (PageResponseDTO<T>) entry.page;
+            }
+        }
+        misses.increment();
+        long version = version(key.city);
+        long started = System.nanoTime();
+        PageResponseDTO<T> page = loader.get();
+        put(key, version, started, page);
+        return page;
+    }
+
+    // incremented by every invalidate(city)
+    private long version(String city) {
+        AtomicLong counter = counter(CityKey.of(city));
+        return counter == null ? UNKNOWN : counter.get();
+    }
+
+    /**
+     * Entity tag of the cached page under {@code key}, null when the page is not cached. It is the tag
+     * {@link #etag(PageResponseDTO)} gives the page, so a conditional request for a cached page is
+     * answered without querying anything.
+     */
+    public String etag(Key key) {
+        if (replicaSet != null && ReplicaSet.pinned())
+            return null;
+        Entry entry;
+        synchronized (this) {
+            entry = fresh(key);
+        }
+        if (entry == null)
+            return null;
+        // taken outside the lock, two requests racing for it compute the same tag
+        String etag = entry.etag;
+        if (etag == null)
+            entry.etag = etag = etag(entry.page);
+        return etag;
+    }
+
+    /**
+     * Entity tag of a listing page, a SHA-256 digest of its JSON form. Every instance serving the same
+     * rows gives the same tag, and changes that leave a page as it was, like votes on a page not sorted
+     * by rating, keep it. It is weak because Tomcat only compresses responses without a strong tag.
+     */
+    public String etag(PageResponseDTO<?> page) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(page));
+            return "W/\"" + HexFormat.of().formatHex(digest, 0, ETAG_BYTES) + "\"";
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void invalidate(String city) {
+        String cityKey = CityKey.of(city);
+        AtomicLong counter = counter(cityKey);
+        if (counter != null) {
+            counter.incrementAndGet();
+            invalidated.put(cityKey, System.nanoTime());
+        }
+        invalidations.increment();
+        synchronized (this) {
+            Set<Key> keys = keysByCity.remove(cityKey);
+            if (keys != null) {
+                for (Key key : keys)
+                    rows -= entries.remove(key).rows;
+            }
+        }
+    }
+
+    public synchronized CacheStatsDTO stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        return CacheStatsDTO.builder()
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRatio(hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount))
+                .evictions(evictions.sum())
+                .invalidations(invalidations.sum())
+                .entries(entries.size())
+                .rows(rows)
+                .maxRows(maxRows)
+                .build();
+    }
+
+    private synchronized void put(Key key, long version, long started, PageResponseDTO<?> page) {
+        // the city changed while the page was loading, it may already be stale
+        AtomicLong counter = counter(key.city);
+        if (counter == null || version != counter.get())
+            return;
+        // read from a replica that may not have replayed the city's last change yet
+        Long changed = invalidated.get(key.city);
+        if (replicaSet != null && changed != null
+                && started - changed < TimeUnit.MILLISECONDS.toNanos(replicaLagMillis))
+            return;
+        long size = page.getData() instanceof Collection<?> data ? data.size() + 1 : 1;
+        if (size > maxRows)
+            return;
+        Entry previous = entries.put(key, new Entry(page, size, started));
+        if (previous != null)
+            rows -= previous.rows;
+        rows += size;
+        keysByCity.computeIfAbsent(key.city, c -> new HashSet<>()).add(key);
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (rows > maxRows && eldest.hasNext()) {
+            Map.Entry<Key, Entry> evicted = eldest.next();
+            eldest.remove();
+            rows -= evicted.getValue().rows;
+            forget(evicted.getKey());
+            evictions.increment();
+        }
+    }
+
+    // the entry under key unless it outlived the maximum age, which drops it; the caller holds this
+    private Entry fresh(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null || System.nanoTime() - entry.loaded < TimeUnit.MILLISECONDS.toNanos(maxAgeMillis))
+            return entry;
+        remove(key);
+        return null;
+    }
+
+    private void remove(Key key) {
+        rows -= entries.remove(key).rows;
+        forget(key);
+    }
+
+    private void forget(Key key) {
+        Set<Key> keys = keysByCity.get(key.city);
+        keys.remove(key);
+        if (keys.isEmpty())
+            keysByCity.remove(key.city);
+    }
+
+    // null for names that are no city, so requests for arbitrary path segments don't each add a counter
+    private AtomicLong counter(String cityKey) {
+        AtomicLong counter = versions.get(cityKey);
+        if (counter != null || !cityIndex.contains(cityKey))
+            return counter;
+        return versions.computeIfAbsent(cityKey, c -> new AtomicLong());
+    }
+
+    /**
+     * Cache key of one listing page. The name filter is normalized the way the listing matches it, and
+     * the page number is dropped in cursor mode where only the token positions the page.
+     */
+    public record Key(String listing, String city, String name, Float minRating, Float maxRating, String tags,
+                      boolean facets, String after, int page, int size, String sort) {
+
+        public static Key of(String listing, String city, String name, Float minRating, Float maxRating,
+                             TagIndex.Filter tags, boolean facets, String after, Pageable pageable) {
+            String normalized = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            return new Key(listing, CityKey.of(city), normalized, minRating, maxRating,
+                    tags == null ? "" : tags.toString(), facets, after,
+                    after == null ? pageable.getPageNumber() : 0, pageable.getPageSize(), pageable.getSort().toString());
+        }
+    }
+
+    private static final class Entry {
+        private final PageResponseDTO<?> page;
+        private final long rows;
+        // System.nanoTime() the load started at
+        private final long loaded;
+        // taken on the first conditional request
+        private volatile String etag;
+
+        Entry(PageResponseDTO<?> page, long rows, long loaded) {
+            this.page = page;
+            this.rows = rows;
+            this.loaded = loaded;
+        }
+    }
+}
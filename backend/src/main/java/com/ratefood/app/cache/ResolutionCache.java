@@ -0,0 +1,102 @@
+package com.ratefood.app.cache;
+
+import com.ratefood.app.repository.CityRepository;
+import com.ratefood.app.repository.RestaurantRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the city and restaurant names write requests refer to into ids, so inserts can attach entity
+ * references instead of loading the named rows. Names are matched trimmed and lower-cased, the way imports
+ * match them, and the lookups behind a miss use the expression indexes schema.sql creates on them. A
+ * restaurant name is only unique within its city; looked up without a city it must be unique overall, and
+ * as another instance may add it in a second city at any time that lookup is never cached. Unknown names
+ * are not cached either, so rows inserted by other instances are found on the next lookup.
+ */
+@Component
+public class ResolutionCache {
+
+    public record CityRef(long id, String name) {
+    }
+
+    public record RestaurantRef(long id, String name, long cityId, String city) {
+    }
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    private final Map<String, CityRef> cities = new ConcurrentHashMap<>();
+    // keyed by city and name
+    private final Map<String, RestaurantRef> restaurants = new ConcurrentHashMap<>();
+
+    /**
+     * The city with this name, the first one by id if several have it; null when there is none.
+     */
+    public CityRef city(String name) {
+        if (name == null || name.isBlank())
+            return null;
+        String key = key(name);
+        CityRef cached = cities.get(key);
+        if (cached != null)
+            return cached;
+        List<CityRepository.CityRef> rows = cityRepository.findRefsByKey(key);
+        if (rows.isEmpty())
+            return null;
+        CityRef ref = new CityRef(rows.get(0).getId(), rows.get(0).getName());
+        cities.put(key, ref);
+        return ref;
+    }
+
+    /**
+     * The restaurant with this name in the city, or anywhere when {@code city} is null; null when there is
+     * none. Fails with 400 when the name without a city matches restaurants in several cities.
+     */
+    public RestaurantRef restaurant(String city, String name) {
+        if (name == null || name.isBlank())
+            return null;
+        boolean anyCity = city == null || city.isBlank();
+        String key = anyCity ? null : key(city) + '\n' + key(name);
+        RestaurantRef ref = anyCity ? null : restaurants.get(key);
+        if (ref != null)
+            return ref;
+        List<RestaurantRepository.RestaurantRef> rows = restaurantRepository.findRefsByKey(key(name),
+                anyCity ? null : key(city));
+        if (rows.isEmpty())
+            return null;
+        RestaurantRepository.RestaurantRef row = rows.get(0);
+        if (anyCity && !rows.stream().allMatch(r -> r.getCityId().equals(row.getCityId())))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "restaurant " + name + " exists in several cities, pass the city");
+        ref = new RestaurantRef(row.getId(), row.getName(), row.getCityId(), row.getCity());
+        if (!anyCity)
+            restaurants.put(key, ref);
+        return ref;
+    }
+
+    /**
+     * Makes a new restaurant resolvable in its city.
+     */
+    public void restaurantAdded(RestaurantRef ref) {
+        restaurants.putIfAbsent(key(ref.city()) + '\n' + key(ref.name()), ref);
+    }
+
+    // a city reload may rename cities
+    public void clear() {
+        cities.clear();
+        restaurants.clear();
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
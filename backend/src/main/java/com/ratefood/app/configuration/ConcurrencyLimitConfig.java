@@ -0,0 +1,28 @@
+package com.ratefood.app.configuration;
+
+import com.ratefood.app.limit.ConcurrencyLimitInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class ConcurrencyLimitConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    @Value("${ratefood.limiter.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!enabled)
+            return;
+        // listing and write endpoints; imports and exports are long streams and would skew the latency
+        registry.addInterceptor(concurrencyLimitInterceptor)
+                .addPathPatterns("/api/dish/**", "/api/restaurant/**", "/api/city/**", "/api/search")
+                .excludePathPatterns("/api/*/import", "/api/*/*/export");
+    }
+}
@@ -0,0 +1,39 @@
+package com.ratefood.app.configuration;
+
+import com.ratefood.app.query.JdbcProxies;
+import com.ratefood.app.query.QueryAccountingInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+// opt-in, every connection of every data source is wrapped to count its statements
+@Configuration
+@ConditionalOnProperty(name = "ratefood.query-stats.enabled")
+public class QueryAccountingConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private QueryAccountingInterceptor queryAccountingInterceptor;
+
+    // static so the data source is wrapped without initializing this configuration early
+    @Bean
+    public static BeanPostProcessor queryCountingDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? JdbcProxies.dataSource(dataSource) : bean;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // registered ahead of the limiter, so shed requests are accounted too
+        registry.addInterceptor(queryAccountingInterceptor).addPathPatterns("/api/**").order(-1);
+    }
+}
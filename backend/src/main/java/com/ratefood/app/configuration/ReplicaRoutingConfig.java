@@ -0,0 +1,85 @@
+package com.ratefood.app.configuration;
+
+import com.ratefood.app.routing.ReadYourWritesInterceptor;
+import com.ratefood.app.routing.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replaces the auto-configured data source when {@code ratefood.datasource.replica-urls} lists read
+ * replicas. Read-only transactions run on a replica, everything else on the primary. The connection is
+ * only fetched at the first statement, once the transaction has marked it read-only.
+ */
+@Configuration
+@ConditionalOnExpression("!'${ratefood.datasource.replica-urls:}'.isBlank()")
+public class ReplicaRoutingConfig implements WebMvcConfigurer {
+
+    @Value("${ratefood.datasource.replica-urls}")
+    private List<String> replicaUrls;
+
+    @Value("${ratefood.datasource.replica-pool-size:10}")
+    private int replicaPoolSize;
+
+    // short, so a dead replica is ejected instead of stalling the request for the default 30 s
+    @Value("${ratefood.datasource.replica-connection-timeout-ms:1000}")
+    private long replicaConnectionTimeoutMillis;
+
+    @Value("${ratefood.datasource.replica-selection:round-robin}")
+    private String selection;
+
+    @Value("${ratefood.datasource.eject-after-failures:2}")
+    private int ejectAfter;
+
+    @Value("${ratefood.datasource.max-replica-lag-ms:0}")
+    private long maxLagMillis;
+
+    @Value("${ratefood.datasource.read-your-writes-ms:3000}")
+    private long readYourWritesMillis;
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .url(url.trim())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setConnectionTimeout(replicaConnectionTimeoutMillis);
+            // a replica that is down at startup is ejected by the first health check instead
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        return new ReplicaSet(primary, replicas,
+                ReplicaSet.Selection.valueOf(selection.toUpperCase(Locale.ROOT).replace('-', '_')),
+                ejectAfter, maxLagMillis);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaSet replicaSet) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(replicaSet.primary());
+        dataSource.setReadOnlyDataSource(replicaSet.readOnlyDataSource());
+        return dataSource;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (readYourWritesMillis > 0)
+            registry.addInterceptor(new ReadYourWritesInterceptor(readYourWritesMillis)).addPathPatterns("/api/**");
+    }
+}
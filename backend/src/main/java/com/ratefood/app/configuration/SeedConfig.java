@@ -0,0 +1,23 @@
+package com.ratefood.app.configuration;
+
+import com.ratefood.app.seed.ChecksumSeedInitializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+// replaces the auto-configured script initializer in the fast-start profile, JPA still waits for it
+@Configuration
+@EnableConfigurationProperties(SqlInitializationProperties.class)
+@ConditionalOnProperty(name = "ratefood.seed.checksum")
+public class SeedConfig {
+
+    @Bean
+    public ChecksumSeedInitializer dataSourceScriptDatabaseInitializer(DataSource dataSource,
+                                                                       SqlInitializationProperties properties) {
+        return new ChecksumSeedInitializer(dataSource, properties);
+    }
+}
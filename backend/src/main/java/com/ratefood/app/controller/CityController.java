@@ -13,6 +13,7 @@ import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -31,8 +32,11 @@ public class CityController {
             @RequestParam(required = false) String name,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @PageableDefault Pageable pageable
+            @PageableDefault Pageable pageable,
+            WebRequest webRequest
             ) {
+        if (webRequest.checkNotModified(cityService.etag()))
+            return null;
         PageResponseDTO<List<String>> cities = cityService.getCities(name, pageable);
         return cities;
 //        List<String> cityNames = cityRepository.findAllByOrderByIdAsc()
@@ -44,4 +48,17 @@ public class CityController {
 //        return new ResponseEntity<>(cityNames, HttpStatus.OK);
     }
 
+    @GetMapping("/city/by-pincode/{pincode}")
+    public ResponseEntity<List<String>> getCitiesByPincode(@PathVariable int pincode) {
+        List<String> cities = cityService.getCitiesByPincode(pincode);
+        if (cities.isEmpty())
+            return new ResponseEntity<>(cities, HttpStatus.NOT_FOUND);
+        return new ResponseEntity<>(cities, HttpStatus.OK);
+    }
+
+    @PostMapping("/city/reload")
+    public ResponseEntity<Integer> reloadCities() {
+        return new ResponseEntity<>(cityService.reloadCities(), HttpStatus.OK);
+    }
+
 }
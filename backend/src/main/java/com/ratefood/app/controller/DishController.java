@@ -1,6 +1,8 @@
 package com.ratefood.app.controller;
 
+import com.ratefood.app.cache.ListingCache;
 import com.ratefood.app.dto.request.DishRequestDTO;
+import com.ratefood.app.dto.response.BatchResponseDTO;
 import com.ratefood.app.dto.response.DishResponseDTO;
 import com.ratefood.app.dto.response.PageResponseDTO;
 import com.ratefood.app.entity.Dish;
@@ -8,14 +10,24 @@ import com.ratefood.app.entity.Restaurant;
 import com.ratefood.app.repository.DishRepository;
 import com.ratefood.app.repository.RestaurantRepository;
 import com.ratefood.app.service.DishService;
+import com.ratefood.app.service.VoteService;
 import jakarta.persistence.EntityNotFoundException;
+import com.ratefood.app.service.ExportService;
+import com.ratefood.app.service.ImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -29,6 +41,18 @@ public class DishController {
     @Autowired
     private DishService dishService;
 
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ListingCache listingCache;
+
     public DishController(DishRepository dishRepository) {
         this.dishRepository = dishRepository;
     }
@@ -39,6 +63,44 @@ public class DishController {
         return new ResponseEntity<>(newDish, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/dish/import", consumes = {"application/x-ndjson", "text/csv"})
+    public void importDishes(@RequestParam(required = false) Integer batchSize,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BufferedReader in = request.getCharacterEncoding() != null ? request.getReader()
+                : new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        importService.importDishes(in, request.getContentType(), batchSize, response.getWriter());
+    }
+
+    @PutMapping("/dish/{id}/tags")
+    public DishResponseDTO updateTags(@PathVariable long id, @RequestBody List<String> tags) {
+        return dishService.updateTags(id, tags);
+    }
+
+    @PostMapping("/dish/{id}/upvote")
+    public ResponseEntity<Void> upvote(@PathVariable long id) {
+        voteService.upvote(id);
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/dish/{id}/downvote")
+    public ResponseEntity<Void> downvote(@PathVariable long id) {
+        voteService.downvote(id);
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/dish/{id}/view")
+    public ResponseEntity<Void> view(@PathVariable long id) {
+        dishService.recordView(id);
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/dish")
+    public BatchResponseDTO<DishResponseDTO> getDishesById(@RequestParam List<Long> ids) {
+        return dishService.getDishBatch(ids);
+    }
+
     @GetMapping("/dish/{city}")
     public PageResponseDTO<List<DishResponseDTO>> getdishes(
             @PathVariable String city,
@@ -48,16 +110,55 @@ public class DishController {
             @RequestParam(required = false) Double currentLatitude,
             @RequestParam(required = false) Double currentLongitude,
             @RequestParam(required = false) Double maxDistanceKm,
+            @RequestParam(required = false) List<String> tags,
+            @RequestParam(defaultValue = "all") String tagMatch,
+            @RequestParam(defaultValue = "false") boolean facets,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @PageableDefault Pageable pageable
+            @PageableDefault Pageable pageable,
+            WebRequest webRequest
     )
 
     {
+        // a cached page is tagged before anything is queried
+        String etag = dishService.cachedEtag(name, city, minRating, maxRating, currentLatitude, currentLongitude, tags,
+                tagMatch, facets, after, pageable);
+        if (etag != null && webRequest.checkNotModified(etag))
+            return null;
         PageResponseDTO<List<DishResponseDTO>> dishes = dishService.getDishes(name, city, minRating, maxRating,
-                currentLatitude, currentLongitude, maxDistanceKm, pageable);
+                currentLatitude, currentLongitude, maxDistanceKm, tags, tagMatch, facets, after, pageable);
+        if (etag == null && webRequest.checkNotModified(listingCache.etag(dishes)))
+            return null;
         return dishes;
 //        return new ResponseEntity<>(restaurants, HttpStatus.CREATED);
     }
 
+    @GetMapping("/dish/{city}/top")
+    public PageResponseDTO<List<DishResponseDTO>> getTopDishes(
+            @PathVariable String city,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @PageableDefault Pageable pageable
+    ) {
+        return dishService.getTopDishes(city, pageable);
+    }
+
+    @GetMapping("/dish/{city}/trending")
+    public PageResponseDTO<List<DishResponseDTO>> getTrendingDishes(
+            @PathVariable String city,
+            @RequestParam(defaultValue = "hour") String window,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @PageableDefault Pageable pageable
+    ) {
+        return dishService.getTrendingDishes(city, window, pageable);
+    }
+
+    @GetMapping("/dish/{city}/export")
+    public void exportDishes(@PathVariable String city, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        exportService.exportDishes(city, response.getWriter());
+    }
 }
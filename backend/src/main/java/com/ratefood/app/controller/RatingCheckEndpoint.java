@@ -0,0 +1,32 @@
+package com.ratefood.app.controller;
+
+import com.ratefood.app.dto.response.RatingCheckDTO;
+import com.ratefood.app.service.RestaurantRatingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Restaurant rating check on the actuator, {@code GET /actuator/ratings} reports the drift and
+ * {@code POST /actuator/ratings} repairs it. Each call scans the restaurant and dish tables, so it is only
+ * reachable where {@code management.endpoints.web.exposure.include} lists {@code ratings}.
+ */
+@Component
+@Endpoint(id = "ratings")
+public class RatingCheckEndpoint {
+
+    @Autowired
+    private RestaurantRatingService restaurantRatingService;
+
+    @ReadOperation
+    public RatingCheckDTO check() {
+        return restaurantRatingService.check(false);
+    }
+
+    @WriteOperation
+    public RatingCheckDTO repair() {
+        return restaurantRatingService.check(true);
+    }
+}
@@ -0,0 +1,29 @@
+package com.ratefood.app.controller;
+
+import com.ratefood.app.dto.response.ReplicaStatsDTO;
+import com.ratefood.app.routing.ReplicaSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Reads, health, latency and lag of the primary and each read replica on the actuator,
+ * {@code GET /actuator/replicas}, reachable where {@code management.endpoints.web.exposure.include} lists
+ * {@code replicas}. Data sources are named by position, their URLs stay out of the response.
+ */
+@Component
+@Endpoint(id = "replicas")
+public class ReplicaStatsEndpoint {
+
+    // only present when read replicas are configured
+    @Autowired(required = false)
+    private ReplicaSet replicaSet;
+
+    @ReadOperation
+    public List<ReplicaStatsDTO> replicas() {
+        return replicaSet == null ? List.of() : replicaSet.stats();
+    }
+}
@@ -1,11 +1,18 @@
 package com.ratefood.app.controller;
 
+import com.ratefood.app.cache.ListingCache;
 import com.ratefood.app.dto.request.RestaurantRequestDTO;
+import com.ratefood.app.dto.response.BatchResponseDTO;
 import com.ratefood.app.dto.response.PageResponseDTO;
+import com.ratefood.app.dto.response.RestaurantResponseDTO;
 import com.ratefood.app.entity.Restaurant;
 import com.ratefood.app.entity.Restaurant;
 import com.ratefood.app.repository.RestaurantRepository;
 import com.ratefood.app.service.RestaurantService;
+import com.ratefood.app.service.ExportService;
+import com.ratefood.app.service.ImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -14,7 +21,12 @@ import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -27,15 +39,43 @@ public class RestaurantController {
     @Autowired
     private RestaurantService restaurantService;
 
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ListingCache listingCache;
+
     @PostMapping("/restaurant")
-    public ResponseEntity<Restaurant> addRestaurant(@RequestBody RestaurantRequestDTO restaurantDTO) {
-        Restaurant newRestaurant = restaurantService.addRestaurant(restaurantDTO);
+    public ResponseEntity<RestaurantResponseDTO> addRestaurant(@RequestBody RestaurantRequestDTO restaurantDTO) {
+        RestaurantResponseDTO newRestaurant = restaurantService.addRestaurant(restaurantDTO);
         return new ResponseEntity<>(newRestaurant, HttpStatus.CREATED);
     }
 
+    @PutMapping("/restaurant/{id}/tags")
+    public RestaurantResponseDTO updateTags(@PathVariable long id, @RequestBody List<String> tags) {
+        return restaurantService.updateTags(id, tags);
+    }
+
+    @PostMapping(value = "/restaurant/import", consumes = {"application/x-ndjson", "text/csv"})
+    public void importRestaurants(@RequestParam(required = false) Integer batchSize,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BufferedReader in = request.getCharacterEncoding() != null ? request.getReader()
+                : new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        importService.importRestaurants(in, request.getContentType(), batchSize, response.getWriter());
+    }
+
+    @GetMapping("/restaurant")
+    public BatchResponseDTO<RestaurantResponseDTO> getRestaurantsById(@RequestParam List<Long> ids) {
+        return restaurantService.getRestaurantBatch(ids);
+    }
 
     @GetMapping("/restaurant/{city}")
-    public PageResponseDTO<List<Restaurant>> getRestaurants(
+    public PageResponseDTO<List<RestaurantResponseDTO>> getRestaurants(
         @PathVariable String city,
         @RequestParam(required = false) String name,
         @RequestParam(required = false) Float minRating,
@@ -43,15 +83,34 @@ public class RestaurantController {
         @RequestParam(required = false) Double currentLatitude,
         @RequestParam(required = false) Double currentLongitude,
         @RequestParam(required = false) Double maxDistanceKm,
+        @RequestParam(required = false) List<String> tags,
+        @RequestParam(defaultValue = "all") String tagMatch,
+        @RequestParam(defaultValue = "false") boolean facets,
+        @RequestParam(required = false) String after,
         @RequestParam(defaultValue = "0") int page,
         @RequestParam(defaultValue = "10") int size,
-        @PageableDefault Pageable pageable
+        @PageableDefault Pageable pageable,
+        WebRequest webRequest
         )
 
     {
-        PageResponseDTO<List<Restaurant>> restaurants = restaurantService.getRestaurants(name, city, minRating, maxRating,
-                currentLatitude, currentLongitude, maxDistanceKm, pageable);
+        // a cached page is tagged before anything is queried
+        String etag = restaurantService.cachedEtag(name, city, minRating, maxRating, currentLatitude, currentLongitude, tags,
+                tagMatch, facets, after, pageable);
+        if (etag != null && webRequest.checkNotModified(etag))
+            return null;
+        PageResponseDTO<List<RestaurantResponseDTO>> restaurants = restaurantService.getRestaurants(name, city, minRating, maxRating,
+                currentLatitude, currentLongitude, maxDistanceKm, tags, tagMatch, facets, after, pageable);
+        if (etag == null && webRequest.checkNotModified(listingCache.etag(restaurants)))
+            return null;
         return restaurants;
 //        return new ResponseEntity<>(restaurants, HttpStatus.CREATED);
     }
+
+    @GetMapping("/restaurant/{city}/export")
+    public void exportRestaurants(@PathVariable String city, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        exportService.exportRestaurants(city, response.getWriter());
+    }
 }
@@ -0,0 +1,25 @@
+package com.ratefood.app.controller;
+
+import com.ratefood.app.dto.response.SearchResponseDTO;
+import com.ratefood.app.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+public class SearchController {
+
+    @Autowired
+    private SearchService searchService;
+
+    // cities always, restaurants and dishes of the city when one is given
+    @GetMapping("/search")
+    public SearchResponseDTO search(@RequestParam String q,
+                                    @RequestParam(required = false) String city,
+                                    @RequestParam(defaultValue = "10") int limit) {
+        return searchService.search(q, city, limit);
+    }
+}
@@ -8,11 +8,16 @@ import org.springframework.stereotype.Service;
 public class DishConverter {
 
     public DishResponseDTO fromDishtoDishResponseDTO(Dish dish){
+        return fromDishtoDishResponseDTO(dish, dish.getRestaurant().getName());
+    }
+
+    // for dishes attached to a restaurant reference, whose name would cost a load
+    public DishResponseDTO fromDishtoDishResponseDTO(Dish dish, String restaurant){
         DishResponseDTO responseDto = DishResponseDTO.builder()
                 .name(dish.getName())
                 .id(dish.getId())
                 .description(dish.getDescription())
-                .restaurant(dish.getRestaurant().getName())
+                .restaurant(restaurant)
                 .tags(dish.getTags())
                 .image(dish.getImage())
                 .build();
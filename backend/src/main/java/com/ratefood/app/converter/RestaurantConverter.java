@@ -0,0 +1,30 @@
+package com.ratefood.app.converter;
+
+import com.ratefood.app.dto.response.RestaurantResponseDTO;
+import com.ratefood.app.entity.Restaurant;
+import org.springframework.stereotype.Service;
+
+@Service
+public class RestaurantConverter {
+
+    public RestaurantResponseDTO fromRestauranttoRestaurantResponseDTO(Restaurant restaurant){
+        return fromRestauranttoRestaurantResponseDTO(restaurant, restaurant.getCity().getName());
+    }
+
+    // for restaurants attached to a city reference, whose name would cost a load
+    public RestaurantResponseDTO fromRestauranttoRestaurantResponseDTO(Restaurant restaurant, String city){
+        RestaurantResponseDTO responseDto = RestaurantResponseDTO.builder()
+                .id(restaurant.getId())
+                .name(restaurant.getName())
+                .cuisine(restaurant.getCuisine())
+                .description(restaurant.getDescription())
+                .rating(restaurant.getRating())
+                .tags(restaurant.getTags())
+                .image(restaurant.getImage())
+                .latitude(restaurant.getLatitude())
+                .longitude(restaurant.getLongitude())
+                .city(city)
+                .build();
+        return responseDto;
+    }
+}
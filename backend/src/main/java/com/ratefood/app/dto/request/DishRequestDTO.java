@@ -20,6 +20,9 @@ public class DishRequestDTO {
 
     private String restaurant;
 
+    // optional, restaurant names are only unique within a city
+    private String city;
+
     private List<String> tags;
 
     private String description;
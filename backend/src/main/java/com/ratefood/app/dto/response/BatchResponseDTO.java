@@ -0,0 +1,18 @@
+package com.ratefood.app.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Rows of a multi-get in request order, and the requested ids that have no row.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResponseDTO<T> {
+   private List<T> data;
+   private List<Long> missing;
+}
@@ -0,0 +1,27 @@
+package com.ratefood.app.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Counters of the listing page cache, used to size {@code ratefood.cache.listing.max-rows}.
+ */
+@Builder
+@Data
+public class CacheStatsDTO {
+    private long hits;
+
+    private long misses;
+
+    private double hitRatio;
+
+    private long evictions;
+
+    private long invalidations;
+
+    private int entries;
+
+    private long rows;
+
+    private long maxRows;
+}
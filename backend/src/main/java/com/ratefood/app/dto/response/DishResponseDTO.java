@@ -2,6 +2,7 @@ package com.ratefood.app.dto.response;
 
 import com.ratefood.app.entity.Restaurant;
 import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import org.antlr.v4.runtime.misc.NotNull;
@@ -10,6 +11,7 @@ import java.util.List;
 
 @Builder
 @Data
+@AllArgsConstructor
 public class DishResponseDTO {
     private Long id;
     private String name;
@@ -0,0 +1,26 @@
+package com.ratefood.app.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * One line of the NDJSON stream returned by the bulk import endpoints: a per-row error,
+ * a progress update after each committed batch, or the final summary.
+ */
+@Builder
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportProgressDTO {
+    private String event;
+
+    private Long line;
+
+    private String error;
+
+    private Long processed;
+
+    private Long inserted;
+
+    private Long failed;
+}
@@ -0,0 +1,28 @@
+package com.ratefood.app.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * State of the adaptive concurrency limiter of one endpoint.
+ */
+@Builder
+@Data
+public class LimiterStatsDTO {
+    private String endpoint;
+
+    private int limit;
+
+    private int inflight;
+
+    private int queued;
+
+    private long accepted;
+
+    private long rejected;
+
+    // JDBC time per request, recent and baseline
+    private double latencyMs;
+
+    private double baselineLatencyMs;
+}
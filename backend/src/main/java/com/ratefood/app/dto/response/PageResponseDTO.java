@@ -1,13 +1,22 @@
 package com.ratefood.app.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PageResponseDTO<T> {
    private T data;
-   private int totalPages;
-   private int totalElements;
-   private int currentPage;
+   // left null in cursor mode, which skips the count query, and on nearest-first pages, see hasNext
+   private Integer totalPages;
+   private Integer totalElements;
+   private Integer currentPage;
+   private String nextCursor;
+   // set instead of the totals on nearest-first pages, which stop reading one row past the page
+   private Boolean hasNext;
+   // tag counts over the whole filtered result, when requested with facets=true
+   private Map<String, Integer> facets;
 }
@@ -0,0 +1,27 @@
+package com.ratefood.app.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of recomputing every restaurant rating from its dishes and comparing it with the stored one.
+ */
+@Builder
+@Data
+public class RatingCheckDTO {
+    private int restaurants;
+
+    // stored rating differs from the recomputed one
+    private int drifted;
+
+    private double maxDrift;
+
+    // running sums that had drifted from the recomputed ones, e.g. by votes flushed on another instance
+    private int memoryDrifted;
+
+    private int repaired;
+
+    private List<Long> driftedIds;
+}
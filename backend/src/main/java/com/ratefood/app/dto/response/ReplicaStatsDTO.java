@@ -0,0 +1,28 @@
+package com.ratefood.app.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Read traffic and health of the primary or one read replica.
+ */
+@Builder
+@Data
+public class ReplicaStatsDTO {
+    // primary, replica-1, replica-2... in the order of ratefood.datasource.replica-urls
+    private String name;
+
+    private boolean primary;
+
+    private boolean healthy;
+
+    private long reads;
+
+    private int active;
+
+    private double latencyMs;
+
+    private double lagMs;
+
+    private int failures;
+}
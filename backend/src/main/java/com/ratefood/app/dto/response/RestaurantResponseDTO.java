@@ -0,0 +1,32 @@
+package com.ratefood.app.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Builder
+@Data
+@AllArgsConstructor
+public class RestaurantResponseDTO {
+    private Long id;
+    private String name;
+
+    private String cuisine;
+
+    private String description;
+
+    private float rating;
+
+    private List<String> tags;
+
+    private String image;
+
+    private BigDecimal latitude;
+
+    private BigDecimal longitude;
+
+    private String city;
+}
@@ -0,0 +1,28 @@
+package com.ratefood.app.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * One city, restaurant or dish matching a search, ranked by how well its name matches.
+ */
+@Builder
+@Data
+public class SearchHitDTO {
+    // city, restaurant or dish
+    private String type;
+
+    // null for cities, which are addressed by name
+    private Long id;
+
+    private String name;
+
+    private String city;
+
+    // dishes only
+    private String restaurant;
+
+    private String image;
+
+    private double score;
+}
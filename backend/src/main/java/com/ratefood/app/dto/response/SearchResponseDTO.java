@@ -0,0 +1,21 @@
+package com.ratefood.app.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+public class SearchResponseDTO {
+    private String query;
+
+    private String city;
+
+    private List<SearchHitDTO> hits;
+
+    private List<SearchSectionDTO> sections;
+
+    // true when any section missed the deadline
+    private boolean partial;
+}
@@ -0,0 +1,21 @@
+package com.ratefood.app.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * How one lookup of a search went. A partial section missed the deadline and contributed no hits.
+ */
+@Builder
+@Data
+public class SearchSectionDTO {
+    private String name;
+
+    private boolean partial;
+
+    private boolean failed;
+
+    private int hits;
+
+    private long tookMs;
+}
@@ -48,7 +48,7 @@ public class Dish {
     @Column(name="rating")
     private float rating;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "restaurant_id", nullable = false)
     private Restaurant restaurant;
 
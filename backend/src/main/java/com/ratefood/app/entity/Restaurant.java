@@ -13,7 +13,8 @@ import java.util.List;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "restaurant")
+// rating filtered and sorted listings of a city
+@Table(name = "restaurant", indexes = @Index(name = "idx_restaurant_city_rating", columnList = "city_id, rating"))
 public class Restaurant {
 
     @Id
@@ -54,7 +55,7 @@ public class Restaurant {
 //    @OneToMany(mappedBy = "restaurant")
 //    private List<Dish> dishes;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "city_id", nullable = false)
     private City city;
 
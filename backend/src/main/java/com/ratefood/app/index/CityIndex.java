@@ -0,0 +1,238 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.entity.City;
+import com.ratefood.app.repository.CityRepository;
+import com.ratefood.app.seed.ChecksumSeedInitializer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the city table for autocomplete. Every word start of every city name is kept
+ * in one sorted array, so a word-prefix lookup is a binary search followed by a short scan.
+ * Pincodes map to the cities containing them through a primitive hash map into a sorted pair array.
+ * The city table is seeded from schema.sql, call {@link #reload()} when the seed changes. With
+ * {@code ratefood.city.snapshot} set, startup reads the cities from the snapshot the build took of the
+ * seed and only queries the table when it was taken at another seed checksum.
+ */
+@Slf4j
+@Component
+public class CityIndex {
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @Autowired(required = false)
+    private ChecksumSeedInitializer seedInitializer;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Value("${ratefood.city.snapshot:}")
+    private String snapshotLocation;
+
+    private volatile Snapshot snapshot = new Snapshot(List.of());
+
+    @PostConstruct
+    public void load() {
+        // the checksum is only known when the seed initializer ran
+        String seed = snapshotLocation.isEmpty() || seedInitializer == null ? null : seedInitializer.checksum();
+        if (seed != null) {
+            Resource resource = resourceLoader.getResource(snapshotLocation);
+            try (InputStream in = resource.getInputStream()) {
+                List<City> cities = CitySnapshotFile.read(in, seed);
+                if (cities != null) {
+                    snapshot = new Snapshot(cities);
+                    log.info("city index loaded {} cities from {}", cities.size(), snapshotLocation);
+                    return;
+                }
+                log.info("city snapshot {} taken at another seed, loading from the database", snapshotLocation);
+            } catch (FileNotFoundException e) {
+                log.info("no city snapshot at {}, loading from the database", snapshotLocation);
+            } catch (IOException e) {
+                log.warn("city snapshot {} unreadable, loading from the database", snapshotLocation, e);
+            }
+        }
+        reload();
+    }
+
+    public void reload() {
+        List<City> cities = cityRepository.findAllByOrderByIdAsc();
+        snapshot = new Snapshot(cities);
+        log.info("city index loaded {} cities", cities.size());
+    }
+
+    /**
+     * Hash of the city names, changes when a reload changes what the city listing returns.
+     */
+    public int version() {
+        return snapshot.version;
+    }
+
+    public int size() {
+        return snapshot.names.length;
+    }
+
+    /**
+     * Whether a city has this name, compared the way {@link CityKey} partitions the indexes.
+     */
+    public boolean contains(String city) {
+        return city != null && snapshot.keys.contains(CityKey.of(city));
+    }
+
+    /**
+     * City names in id order, starting at {@code offset}.
+     */
+    public List<String> all(int offset, int limit) {
+        Snapshot s = snapshot;
+        List<String> names = new ArrayList<>(Math.max(0, Math.min(limit, s.names.length - offset)));
+        for (int i = offset; i < s.names.length && names.size() < limit; i++)
+            names.add(s.names[i]);
+        return names;
+    }
+
+    /**
+     * Cities having a word that starts with {@code prefix}, names starting with it first, then in id order.
+     */
+    public Matches search(String prefix, int offset, int limit) {
+        return snapshot.search(prefix.toLowerCase(Locale.ROOT), offset, limit);
+    }
+
+    /**
+     * Names of the cities whose pincode list contains {@code pincode}, in id order.
+     */
+    public List<String> byPincode(int pincode) {
+        return snapshot.byPincode(pincode);
+    }
+
+    public record Matches(List<String> names, int total) {
+    }
+
+    private static final class Snapshot {
+        private final String[] names;
+        private final Set<String> keys = new HashSet<>();
+        // word-start suffixes of the lower-cased names, sorted, with the owning city ordinal packed as
+        // (ordinal << 1 | notNameStart) in the parallel array
+        private final String[] suffixes;
+        private final int[] owners;
+        // (pincode, city ordinal) pairs sorted by pincode; the map points at the first pair of each pincode
+        private final int[] pincodes;
+        private final int[] pincodeOwners;
+        private final IntIntMap pincodeStart;
+        private final int version;
+
+        Snapshot(List<City> cities) {
+            names = new String[cities.size()];
+            List<String> suffixList = new ArrayList<>();
+            List<Integer> ownerList = new ArrayList<>();
+            LongList pairs = new LongList();
+            for (int ord = 0; ord < cities.size(); ord++) {
+                City city = cities.get(ord);
+                String name = city.getName() == null ? "" : city.getName();
+                names[ord] = name;
+                keys.add(CityKey.of(name));
+                if (city.getPincode() != null) {
+                    for (Integer pincode : city.getPincode()) {
+                        if (pincode != null && pincode > 0)
+                            pairs.add((long) pincode << 32 | ord);
+                    }
+                }
+                String lower = name.toLowerCase(Locale.ROOT);
+                for (int i = 0; i < lower.length(); i++) {
+                    if (i == 0 || lower.charAt(i - 1) == ' ') {
+                        suffixList.add(lower.substring(i));
+                        ownerList.add(ord << 1 | (i == 0 ? 0 : 1));
+                    }
+                }
+            }
+            Integer[] order = new Integer[suffixList.size()];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            Arrays.sort(order, (a, b) -> suffixList.get(a).compareTo(suffixList.get(b)));
+            suffixes = new String[order.length];
+            owners = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                suffixes[i] = suffixList.get(order[i]);
+                owners[i] = ownerList.get(order[i]);
+            }
+
+            pairs.sort();
+            pincodes = new int[pairs.size()];
+            pincodeOwners = new int[pairs.size()];
+            int distinct = 0;
+            for (int i = 0; i < pairs.size(); i++) {
+                pincodes[i] = (int) (pairs.get(i) >>> 32);
+                pincodeOwners[i] = (int) pairs.get(i);
+                if (i == 0 || pincodes[i] != pincodes[i - 1])
+                    distinct++;
+            }
+            pincodeStart = new IntIntMap(distinct);
+            for (int i = pairs.size() - 1; i >= 0; i--)
+                pincodeStart.put(pincodes[i], i);
+            version = Arrays.hashCode(names);
+        }
+
+        List<String> byPincode(int pincode) {
+            int start = pincodeStart.get(pincode, -1);
+            if (start < 0)
+                return List.of();
+            List<String> result = new ArrayList<>(2);
+            for (int i = start; i < pincodes.length && pincodes[i] == pincode; i++) {
+                if (i == start || pincodeOwners[i] != pincodeOwners[i - 1])
+                    result.add(names[pincodeOwners[i]]);
+            }
+            return result;
+        }
+
+        Matches search(String prefix, int offset, int limit) {
+            int from = lowerBound(prefix);
+            BitSet nameStart = new BitSet(names.length);
+            BitSet wordStart = new BitSet(names.length);
+            for (int i = from; i < suffixes.length && suffixes[i].startsWith(prefix); i++) {
+                int ord = owners[i] >>> 1;
+                if ((owners[i] & 1) == 0)
+                    nameStart.set(ord);
+                else
+                    wordStart.set(ord);
+            }
+            wordStart.andNot(nameStart);
+            int total = nameStart.cardinality() + wordStart.cardinality();
+            List<String> page = new ArrayList<>(Math.max(0, Math.min(limit, total - offset)));
+            int rank = 0;
+            for (BitSet group : new BitSet[]{nameStart, wordStart}) {
+                for (int ord = group.nextSetBit(0); ord >= 0 && page.size() < limit; ord = group.nextSetBit(ord + 1)) {
+                    if (rank++ >= offset)
+                        page.add(names[ord]);
+                }
+            }
+            return new Matches(page, total);
+        }
+
+        private int lowerBound(String key) {
+            int lo = 0, hi = suffixes.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (suffixes[mid].compareTo(key) < 0)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.ratefood.app.index;
+
+import java.util.Locale;
+
+/**
+ * Indexes are partitioned by lower-cased city name, matching the {@code LOWER(c.name) = LOWER(:city)}
+ * lookup of the listing queries.
+ */
+public final class CityKey {
+
+    private CityKey() {
+    }
+
+    public static String of(String city) {
+        return city.toLowerCase(Locale.ROOT);
+    }
+}
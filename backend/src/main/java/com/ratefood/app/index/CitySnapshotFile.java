@@ -0,0 +1,73 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.entity.City;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary copy of the seeded city table, written at build time by {@link CitySnapshotGenerator} so
+ * {@link CityIndex} can start from one resource read instead of a query. The file carries the seed
+ * checksum it was taken at and is ignored by instances running another seed.
+ */
+final class CitySnapshotFile {
+
+    private static final int MAGIC = 0x52464331;
+
+    private CitySnapshotFile() {
+    }
+
+    /**
+     * The cities in the stream, null when it was taken at another seed.
+     */
+    static List<City> read(InputStream stream, String seed) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(seed))
+                return null;
+            int count = in.readInt();
+            List<City> cities = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                City city = new City();
+                city.setId(in.readLong());
+                city.setName(in.readBoolean() ? in.readUTF() : null);
+                int pincodes = in.readInt();
+                if (pincodes >= 0) {
+                    List<Integer> pincode = new ArrayList<>(pincodes);
+                    for (int j = 0; j < pincodes; j++)
+                        pincode.add(in.readInt());
+                    city.setPincode(pincode);
+                }
+                cities.add(city);
+            }
+            return cities;
+        }
+    }
+
+    static void write(Path path, String seed, List<City> cities) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(seed);
+            out.writeInt(cities.size());
+            for (City city : cities) {
+                out.writeLong(city.getId());
+                out.writeBoolean(city.getName() != null);
+                if (city.getName() != null)
+                    out.writeUTF(city.getName());
+                List<Integer> pincode = city.getPincode();
+                out.writeInt(pincode == null ? -1 : pincode.size());
+                if (pincode != null)
+                    for (Integer code : pincode)
+                        out.writeInt(code == null ? 0 : code);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.entity.City;
+import com.ratefood.app.seed.ChecksumSeedInitializer;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the city snapshot from the city rows of a seed script, keyed by the checksum
+ * {@link ChecksumSeedInitializer} computes for the scripts that seed them. The build runs it on
+ * schema.sql and packs the result as {@code city-snapshot.bin}, so every container of a release starts
+ * with the snapshot of its own seed:
+ * {@code CitySnapshotGenerator <cities script> <snapshot> [seed script...]}, the seed scripts defaulting
+ * to the cities script.
+ */
+public final class CitySnapshotGenerator {
+
+    // (id,	'name',	'{pincode,...}') as written by the Adminer dump
+    private static final Pattern ROW = Pattern.compile("\\((\\d+),\\s*'((?:[^']|'')*)',\\s*'\\{([0-9,]*)}'\\)");
+
+    private CitySnapshotGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2)
+            throw new IllegalArgumentException("usage: CitySnapshotGenerator <cities script> <snapshot> [seed script...]");
+        Path cities = Path.of(args[0]);
+        List<Path> seed = args.length > 2 ? Arrays.stream(args, 2, args.length).map(Path::of).toList() : List.of(cities);
+        int count = generate(cities, seed, Path.of(args[1]));
+        System.out.printf("city snapshot with %d cities written to %s%n", count, args[1]);
+    }
+
+    /**
+     * Writes the snapshot of the cities in {@code citiesScript} and returns how many there are.
+     */
+    public static int generate(Path citiesScript, List<Path> seedScripts, Path snapshot) throws IOException {
+        List<City> cities = read(citiesScript);
+        List<Resource> scripts = seedScripts.stream().<Resource>map(FileSystemResource::new).toList();
+        CitySnapshotFile.write(snapshot, ChecksumSeedInitializer.key(scripts), cities);
+        return cities.size();
+    }
+
+    // in id order, the order CityIndex loads the table in
+    private static List<City> read(Path script) throws IOException {
+        List<City> cities = new ArrayList<>();
+        Matcher matcher = ROW.matcher(Files.readString(script));
+        while (matcher.find()) {
+            City city = new City();
+            city.setId(Long.parseLong(matcher.group(1)));
+            city.setName(matcher.group(2).replace("''", "'"));
+            city.setPincode(matcher.group(3).isEmpty() ? List.of()
+                    : Arrays.stream(matcher.group(3).split(",")).map(Integer::valueOf).toList());
+            cities.add(city);
+        }
+        cities.sort(Comparator.comparing(City::getId));
+        return cities;
+    }
+}
@@ -0,0 +1,143 @@
+package com.ratefood.app.index;
+
+import java.util.Arrays;
+
+/**
+ * Approximate top-k of a stream of ids by exponentially decayed event count, in memory bounded by
+ * {@code width * depth + k} regardless of how many distinct ids the stream has.
+ * <p>
+ * Counts live in a Count-Min sketch. Decay is applied forward: an event at time t adds
+ * {@code exp((t - landmark) / tau)} instead of scaling every counter down as time passes, so scores of
+ * different ids stay comparable and an update touches {@code depth} counters. When the weights grow
+ * large everything is rescaled to a new landmark. The k best estimates are kept as candidates, a new id
+ * replaces the weakest one once its estimate is higher.
+ */
+public class DecayingTopK {
+
+    private static final double RESCALE_EXPONENT = 20;
+
+    private final double tauMillis;
+    private final int k;
+    private final int mask;
+    private final double[][] sketch;
+
+    // guarded by this
+    private long landmark;
+    private final long[] ids;
+    private final double[] scores;
+    private int size;
+    private int weakest = -1;
+    private volatile Ranking ranking = new Ranking(new long[0], new double[0], 0);
+    private volatile boolean dirty;
+
+    /**
+     * @param width counters per sketch row, rounded up to a power of two
+     */
+    public DecayingTopK(long tauMillis, int k, int width, int depth, long now) {
+        this.tauMillis = tauMillis;
+        this.k = k;
+        int columns = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = columns - 1;
+        this.sketch = new double[depth][columns];
+        this.landmark = now;
+        this.ids = new long[k];
+        this.scores = new double[k];
+    }
+
+    public synchronized void add(long id, double count, long now) {
+        if (now - landmark > RESCALE_EXPONENT * tauMillis)
+            rescale(now);
+        double weight = count * Math.exp((now - landmark) / tauMillis);
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < sketch.length; row++) {
+            int column = column(id, row);
+            sketch[row][column] += weight;
+            estimate = Math.min(estimate, sketch[row][column]);
+        }
+        offer(id, estimate);
+    }
+
+    /**
+     * Candidate ids with a decayed count of at least {@code minCount} at {@code now}, highest first.
+     * Sorting is deferred to the first read after a change and bounded by k.
+     */
+    public long[] top(long now, double minCount) {
+        Ranking current = ranking;
+        if (dirty) {
+            synchronized (this) {
+                if (dirty) {
+                    Integer[] order = new Integer[size];
+                    for (int i = 0; i < size; i++)
+                        order[i] = i;
+                    Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+                    long[] sortedIds = new long[size];
+                    double[] sortedScores = new double[size];
+                    for (int i = 0; i < size; i++) {
+                        sortedIds[i] = ids[order[i]];
+                        sortedScores[i] = scores[order[i]];
+                    }
+                    ranking = new Ranking(sortedIds, sortedScores, landmark);
+                    dirty = false;
+                }
+                current = ranking;
+            }
+        }
+        // candidates nobody touched lately keep their score, cut them once it has decayed away
+        double threshold = minCount * Math.exp((now - current.landmark()) / tauMillis);
+        int n = 0;
+        while (n < current.ids().length && current.scores()[n] >= threshold)
+            n++;
+        return n == current.ids().length ? current.ids() : Arrays.copyOf(current.ids(), n);
+    }
+
+    private record Ranking(long[] ids, double[] scores, long landmark) {
+    }
+
+    private void offer(long id, double estimate) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                scores[i] = estimate;
+                if (i == weakest)
+                    weakest = findWeakest();
+                dirty = true;
+                return;
+            }
+        }
+        if (size < k) {
+            ids[size] = id;
+            scores[size++] = estimate;
+            weakest = findWeakest();
+            dirty = true;
+        } else if (estimate > scores[weakest]) {
+            ids[weakest] = id;
+            scores[weakest] = estimate;
+            weakest = findWeakest();
+            dirty = true;
+        }
+    }
+
+    private int findWeakest() {
+        int min = 0;
+        for (int i = 1; i < size; i++)
+            if (scores[i] < scores[min])
+                min = i;
+        return min;
+    }
+
+    private void rescale(long now) {
+        double factor = Math.exp(-(now - landmark) / tauMillis);
+        for (double[] row : sketch)
+            for (int i = 0; i < row.length; i++)
+                row[i] *= factor;
+        for (int i = 0; i < size; i++)
+            scores[i] *= factor;
+        landmark = now;
+    }
+
+    private int column(long id, int row) {
+        long h = (id + (row + 1) * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        h *= 0x94D049BB133111EBL;
+        return (int) (h ^ (h >>> 29)) & mask;
+    }
+}
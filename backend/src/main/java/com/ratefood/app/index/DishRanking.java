@@ -0,0 +1,226 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.repository.DishRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-city ranking of dishes by rating, then votes, then id, kept in memory with the rows the listing
+ * returns. Each city is a sorted array published copy-on-write, so a page is an array slice read without
+ * locking or SQL. Changes are merged into the array in batches, and the whole ranking is rebuilt from the
+ * dish table periodically to pick up writes made by other instances; changes made while it is rebuilt are
+ * replayed onto the new ranking as it is swapped in.
+ */
+@Slf4j
+@Component
+public class DishRanking {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble((Entry e) -> -e.rating())
+            .thenComparingInt(e -> -e.upvote())
+            .thenComparingLong(Entry::id);
+
+    @Autowired
+    private DishRepository dishRepository;
+
+    // writers are serialized by this object's monitor, readers only dereference the volatile arrays
+    private volatile Map<String, City> cities = new HashMap<>();
+    private volatile Map<Long, Entry> byId = new ConcurrentHashMap<>();
+    // changes made while a rebuild scans the table, replayed onto the rebuilt ranking; guarded by this
+    private List<Runnable> changedDuringLoad;
+
+    private record Entry(long id, String city, DishResponseDTO dish, float rating, int upvote, int downvote) {
+    }
+
+    private static final class City {
+        volatile Entry[] ranked;
+
+        City(Entry[] ranked) {
+            this.ranked = ranked;
+        }
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${ratefood.ranking.rebuild-interval-ms:600000}",
+            fixedDelayString = "${ratefood.ranking.rebuild-interval-ms:600000}")
+    public void load() {
+        // the scan and sort run without the monitor, so vote flushes and edits aren't held up by them
+        synchronized (this) {
+            changedDuringLoad = new ArrayList<>();
+        }
+        Map<Long, Entry> entries = new ConcurrentHashMap<>();
+        try {
+            for (DishRepository.RankEntry row : dishRepository.findAllRanked()) {
+                if (row.getCity() == null)
+                    continue;
+                DishResponseDTO dish = new DishResponseDTO(row.getId(), row.getName(), row.getRestaurant(),
+                        row.getTags(), row.getDescription(), row.getImage());
+                entries.put(row.getId(), new Entry(row.getId(), CityKey.of(row.getCity()), dish,
+                        row.getRating(), row.getUpvote(), row.getDownvote()));
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringLoad = null;
+            }
+            throw e;
+        }
+        Map<String, List<Entry>> grouped = new HashMap<>();
+        for (Entry entry : entries.values())
+            grouped.computeIfAbsent(entry.city(), k -> new ArrayList<>()).add(entry);
+        Map<String, City> loaded = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((city, list) -> {
+            Entry[] ranked = list.toArray(new Entry[0]);
+            Arrays.sort(ranked, ORDER);
+            loaded.put(city, new City(ranked));
+        });
+        synchronized (this) {
+            List<Runnable> replay = changedDuringLoad;
+            changedDuringLoad = null;
+            byId = entries;
+            cities = loaded;
+            // the scan may have read the rows before these changes
+            replay.forEach(Runnable::run);
+        }
+        log.info("dish ranking loaded {} dishes in {} cities", entries.size(), loaded.size());
+    }
+
+    /**
+     * Ranks a newly created dish, which starts without votes.
+     */
+    public synchronized void add(String city, DishResponseDTO dish) {
+        if (city == null)
+            return;
+        if (changedDuringLoad != null)
+            changedDuringLoad.add(() -> add(city, dish));
+        merge(List.of(new Entry(dish.getId(), CityKey.of(city), dish, 0, 0, 0)));
+    }
+
+    /**
+     * Moves dishes to the rank of their new vote counts. Counts are absolute, so applying an update twice
+     * or after a rebuild that already saw it is harmless. Dishes the ranking doesn't know are skipped.
+     */
+    public synchronized void updateVotes(Collection<VoteCount> counts) {
+        if (changedDuringLoad != null) {
+            List<VoteCount> replayed = List.copyOf(counts);
+            changedDuringLoad.add(() -> updateVotes(replayed));
+        }
+        List<Entry> changed = new ArrayList<>(counts.size());
+        for (VoteCount count : counts) {
+            Entry entry = byId.get(count.dishId());
+            if (entry != null)
+                changed.add(new Entry(entry.id(), entry.city(), entry.dish(), count.rating(),
+                        count.upvote(), count.downvote()));
+        }
+        merge(changed);
+    }
+
+    /**
+     * Replaces the listing row of a ranked dish after an edit, keeping its rank.
+     */
+    public synchronized void updateRow(DishResponseDTO dish) {
+        if (changedDuringLoad != null)
+            changedDuringLoad.add(() -> updateRow(dish));
+        Entry entry = byId.get(dish.getId());
+        if (entry != null)
+            merge(List.of(new Entry(entry.id(), entry.city(), dish, entry.rating(), entry.upvote(), entry.downvote())));
+    }
+
+    public record VoteCount(long dishId, int upvote, int downvote, float rating) {
+    }
+
+    /**
+     * The requested page of the city's ranking, best rated first.
+     */
+    public Page<DishResponseDTO> top(String city, Pageable pageable) {
+        City ranking = cities.get(CityKey.of(city));
+        Entry[] ranked = ranking == null ? new Entry[0] : ranking.ranked;
+        int from = (int) Math.min(pageable.getOffset(), ranked.length);
+        int to = Math.min(from + pageable.getPageSize(), ranked.length);
+        List<DishResponseDTO> dishes = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++)
+            dishes.add(ranked[i].dish());
+        return new PageImpl<>(dishes, pageable, ranked.length);
+    }
+
+    /**
+     * City key of a ranked dish, null for dishes created on another instance since the last rebuild.
+     */
+    public String cityOf(long dishId) {
+        Entry entry = byId.get(dishId);
+        return entry == null ? null : entry.city();
+    }
+
+    /**
+     * Listing rows of the ranked dishes among {@code dishIds}, in the given order.
+     */
+    public List<DishResponseDTO> dishes(long[] dishIds) {
+        Map<Long, Entry> entries = byId;
+        List<DishResponseDTO> dishes = new ArrayList<>(dishIds.length);
+        for (long id : dishIds) {
+            Entry entry = entries.get(id);
+            if (entry != null)
+                dishes.add(entry.dish());
+        }
+        return dishes;
+    }
+
+    // drops the old positions of the changed dishes and merges their new ones in, one copy per city
+    private synchronized void merge(List<Entry> changed) {
+        if (changed.isEmpty())
+            return;
+        Map<String, List<Entry>> byCity = new HashMap<>();
+        for (Entry entry : changed) {
+            byId.put(entry.id(), entry);
+            byCity.computeIfAbsent(entry.city(), k -> new ArrayList<>()).add(entry);
+        }
+        Map<String, City> current = cities;
+        Map<String, City> added = null;
+        for (Map.Entry<String, List<Entry>> update : byCity.entrySet()) {
+            List<Entry> incoming = update.getValue();
+            incoming.sort(ORDER);
+            Set<Long> ids = new HashSet<>(incoming.size() * 2);
+            for (Entry entry : incoming)
+                ids.add(entry.id());
+            City city = current.get(update.getKey());
+            Entry[] old = city == null ? new Entry[0] : city.ranked;
+            Entry[] ranked = new Entry[old.length + incoming.size()];
+            int n = 0, j = 0;
+            for (Entry entry : old) {
+                if (ids.contains(entry.id()))
+                    continue;
+                while (j < incoming.size() && ORDER.compare(incoming.get(j), entry) < 0)
+                    ranked[n++] = incoming.get(j++);
+                ranked[n++] = entry;
+            }
+            while (j < incoming.size())
+                ranked[n++] = incoming.get(j++);
+            ranked = n == ranked.length ? ranked : Arrays.copyOf(ranked, n);
+            if (city != null) {
+                city.ranked = ranked;
+            } else {
+                if (added == null)
+                    added = new HashMap<>(current);
+                added.put(update.getKey(), new City(ranked));
+            }
+        }
+        if (added != null)
+            cities = added;
+    }
+}
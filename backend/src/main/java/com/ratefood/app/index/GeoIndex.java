@@ -0,0 +1,298 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.repository.RestaurantRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory grid of restaurant coordinates per city. Radius queries only compute distances for
+ * restaurants in the grid cells overlapping the search box, and return ids nearest first. Paged listings
+ * walk the cells ring by ring outward from the caller instead, and stop once the page is settled. The grids
+ * are rebuilt from the table periodically, to pick up restaurants created on other instances.
+ */
+@Slf4j
+@Component
+public class GeoIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+    // ~5.5 km of latitude per cell, a city spans a few dozen cells
+    private static final double CELL_DEGREES = 0.05;
+    private static final long COLUMNS = (long) Math.ceil(360 / CELL_DEGREES) + 1;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    private volatile Map<String, CityGrid> cities = new ConcurrentHashMap<>();
+    // restaurants added while a rebuild scans the table, replayed onto the rebuilt grids; guarded by this
+    private List<Added> addedDuringLoad;
+
+    private record Added(String city, long restaurantId, BigDecimal latitude, BigDecimal longitude) {
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${ratefood.geo.rebuild-interval-ms:600000}",
+            fixedDelayString = "${ratefood.geo.rebuild-interval-ms:600000}")
+    public void load() {
+        synchronized (this) {
+            addedDuringLoad = new ArrayList<>();
+        }
+        Map<String, CityGrid> loaded = new ConcurrentHashMap<>();
+        Set<Long> ids = new HashSet<>();
+        try {
+            for (RestaurantRepository.Location location : restaurantRepository.findAllLocations()) {
+                ids.add(location.getId());
+                add(loaded, location.getCity(), location.getId(), location.getLatitude(), location.getLongitude());
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                addedDuringLoad = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            // the scan may already have seen them
+            for (Added added : addedDuringLoad) {
+                if (ids.add(added.restaurantId()))
+                    add(loaded, added.city(), added.restaurantId(), added.latitude(), added.longitude());
+            }
+            addedDuringLoad = null;
+            cities = loaded;
+        }
+        log.info("geo index loaded {} restaurants in {} cities", ids.size(), loaded.size());
+    }
+
+    public synchronized void add(String city, long restaurantId, BigDecimal latitude, BigDecimal longitude) {
+        if (addedDuringLoad != null)
+            addedDuringLoad.add(new Added(city, restaurantId, latitude, longitude));
+        add(cities, city, restaurantId, latitude, longitude);
+    }
+
+    private static void add(Map<String, CityGrid> cities, String city, long restaurantId, BigDecimal latitude,
+                            BigDecimal longitude) {
+        if (city == null || latitude == null || longitude == null)
+            return;
+        cities.computeIfAbsent(CityKey.of(city), k -> new CityGrid())
+                .add(restaurantId, latitude.doubleValue(), longitude.doubleValue());
+    }
+
+    /**
+     * Restaurants of the city within {@code maxDistanceKm} of the given point, nearest first.
+     * A null radius returns every restaurant of the city ordered by distance.
+     */
+    public Nearby nearby(String city, double latitude, double longitude, Double maxDistanceKm) {
+        CityGrid grid = cities.get(CityKey.of(city));
+        if (grid == null)
+            return Nearby.EMPTY;
+        return grid.nearby(latitude, longitude, maxDistanceKm == null ? Double.POSITIVE_INFINITY : maxDistanceKm);
+    }
+
+    /**
+     * Visits the restaurants of the city within {@code maxDistanceKm} of the given point, any distance when
+     * null, nearest first until the visitor returns false. A visit that stops after a page of restaurants
+     * only computes distances in the rings of cells it reached.
+     */
+    public void visitNearest(String city, double latitude, double longitude, Double maxDistanceKm, Visitor visitor) {
+        CityGrid grid = cities.get(CityKey.of(city));
+        if (grid != null)
+            grid.visitNearest(latitude, longitude, maxDistanceKm == null ? Double.POSITIVE_INFINITY : maxDistanceKm,
+                    visitor);
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        // false stops the visit
+        boolean visit(long restaurantId, float distanceKm);
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static long row(double latitude) {
+        return (long) Math.floor((latitude + 90) / CELL_DEGREES);
+    }
+
+    private static long column(double longitude) {
+        return (long) Math.floor((longitude + 180) / CELL_DEGREES);
+    }
+
+    public record Nearby(long[] ids, float[] distancesKm) {
+        static final Nearby EMPTY = new Nearby(new long[0], new float[0]);
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    private static final class CityGrid {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, IntList> cells = new HashMap<>();
+        private long[] ids = new long[16];
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private int size;
+        // occupied cells and the latitude farthest from the equator, bounds of the ring search
+        private long minRow = Long.MAX_VALUE, maxRow = Long.MIN_VALUE;
+        private long minCol = Long.MAX_VALUE, maxCol = Long.MIN_VALUE;
+        private double maxAbsLatitude;
+
+        void add(long id, double latitude, double longitude) {
+            lock.writeLock().lock();
+            try {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size << 1);
+                    latitudes = Arrays.copyOf(latitudes, size << 1);
+                    longitudes = Arrays.copyOf(longitudes, size << 1);
+                }
+                ids[size] = id;
+                latitudes[size] = latitude;
+                longitudes[size] = longitude;
+                long r = row(latitude), c = column(longitude);
+                cells.computeIfAbsent(r * COLUMNS + c, k -> new IntList()).add(size);
+                minRow = Math.min(minRow, r);
+                maxRow = Math.max(maxRow, r);
+                minCol = Math.min(minCol, c);
+                maxCol = Math.max(maxCol, c);
+                maxAbsLatitude = Math.max(maxAbsLatitude, Math.abs(latitude));
+                size++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        Nearby nearby(double latitude, double longitude, double maxKm) {
+            lock.readLock().lock();
+            try {
+                // hits are packed as (float distance bits << 32 | ordinal); non-negative float bits sort like the floats
+                LongList hits = new LongList();
+                if (Double.isInfinite(maxKm)) {
+                    for (int ord = 0; ord < size; ord++)
+                        hits.add(pack(haversineKm(latitude, longitude, latitudes[ord], longitudes[ord]), ord));
+                } else {
+                    double dLat = maxKm / KM_PER_DEGREE;
+                    double cosLat = Math.cos(Math.toRadians(latitude));
+                    double dLon = cosLat < 1e-6 ? 180 : Math.min(180, maxKm / (KM_PER_DEGREE * cosLat));
+                    long minRow = row(latitude - dLat), maxRow = row(latitude + dLat);
+                    long minCol = column(longitude - dLon), maxCol = column(longitude + dLon);
+                    if ((maxRow - minRow + 1) * (maxCol - minCol + 1) <= cells.size()) {
+                        for (long r = minRow; r <= maxRow; r++) {
+                            for (long c = minCol; c <= maxCol; c++) {
+                                IntList cell = cells.get(r * COLUMNS + c);
+                                if (cell != null)
+                                    collect(cell, latitude, longitude, maxKm, hits);
+                            }
+                        }
+                    } else {
+                        // the box covers more cells than the city occupies, walk the occupied ones instead
+                        for (Map.Entry<Long, IntList> cell : cells.entrySet()) {
+                            long r = cell.getKey() / COLUMNS, c = cell.getKey() % COLUMNS;
+                            if (r >= minRow && r <= maxRow && c >= minCol && c <= maxCol)
+                                collect(cell.getValue(), latitude, longitude, maxKm, hits);
+                        }
+                    }
+                }
+                hits.sort();
+                long[] resultIds = new long[hits.size()];
+                float[] distances = new float[hits.size()];
+                for (int i = 0; i < hits.size(); i++) {
+                    long hit = hits.get(i);
+                    resultIds[i] = ids[(int) hit];
+                    distances[i] = Float.intBitsToFloat((int) (hit >>> 32));
+                }
+                return new Nearby(resultIds, distances);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void visitNearest(double latitude, double longitude, double maxKm, Visitor visitor) {
+            lock.readLock().lock();
+            try {
+                if (size == 0)
+                    return;
+                long centerRow = row(latitude), centerCol = column(longitude);
+                // a restaurant beyond ring k is at least k whole cells away, and cells are narrowest east-west
+                // at the latitude farthest from the equator
+                double cosLat = Math.cos(Math.toRadians(Math.max(maxAbsLatitude, Math.abs(latitude))));
+                double cellKm = CELL_DEGREES * KM_PER_DEGREE * Math.max(cosLat, 1e-6);
+                long firstRing = Math.max(0, Math.max(Math.max(minRow - centerRow, centerRow - maxRow),
+                        Math.max(minCol - centerCol, centerCol - maxCol)));
+                long lastRing = Math.max(Math.max(maxRow - centerRow, centerRow - minRow),
+                        Math.max(maxCol - centerCol, centerCol - minCol));
+                LongList hits = new LongList();
+                int visited = 0;
+                for (long ring = firstRing; ring <= lastRing; ring++) {
+                    int from = hits.size();
+                    long top = Math.max(minRow, centerRow - ring), bottom = Math.min(maxRow, centerRow + ring);
+                    long left = Math.max(minCol, centerCol - ring), right = Math.min(maxCol, centerCol + ring);
+                    for (long r = top; r <= bottom; r++) {
+                        if (r == centerRow - ring || r == centerRow + ring) {
+                            for (long c = left; c <= right; c++)
+                                collect(r, c, latitude, longitude, maxKm, hits);
+                        } else {
+                            if (centerCol - ring >= minCol)
+                                collect(r, centerCol - ring, latitude, longitude, maxKm, hits);
+                            if (centerCol + ring <= maxCol)
+                                collect(r, centerCol + ring, latitude, longitude, maxKm, hits);
+                        }
+                    }
+                    // later rings only hold restaurants farther away than the settled distance
+                    double settledKm = ring * cellKm;
+                    boolean done = ring == lastRing || settledKm > maxKm;
+                    if (hits.size() > from)
+                        hits.sort(visited);
+                    for (; visited < hits.size(); visited++) {
+                        long hit = hits.get(visited);
+                        float distance = Float.intBitsToFloat((int) (hit >>> 32));
+                        if (!done && distance > settledKm)
+                            break;
+                        if (!visitor.visit(ids[(int) hit], distance))
+                            return;
+                    }
+                    if (done)
+                        return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void collect(long r, long c, double latitude, double longitude, double maxKm, LongList hits) {
+            IntList cell = cells.get(r * COLUMNS + c);
+            if (cell != null)
+                collect(cell, latitude, longitude, maxKm, hits);
+        }
+
+        private void collect(IntList cell, double latitude, double longitude, double maxKm, LongList hits) {
+            for (int i = 0; i < cell.size(); i++) {
+                int ord = cell.get(i);
+                double distance = haversineKm(latitude, longitude, latitudes[ord], longitudes[ord]);
+                if (distance <= maxKm)
+                    hits.add(pack(distance, ord));
+            }
+        }
+
+        private static long pack(double distanceKm, int ordinal) {
+            return ((long) Float.floatToIntBits((float) distanceKm) << 32) | ordinal;
+        }
+    }
+}
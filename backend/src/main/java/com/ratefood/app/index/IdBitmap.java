@@ -0,0 +1,423 @@
+package com.ratefood.app.index;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ids in the layout of a Roaring bitmap: ids are split on their low 16
+ * bits into one container per high part, a sorted char array while the container holds up to 4096 ids
+ * and a 65536 bit bitmap above that. Intersections and unions work container by container, and
+ * {@link #andCardinality} counts an intersection without building it.
+ * <p>
+ * Not thread safe, callers guard shared instances.
+ */
+public final class IdBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+
+    private int[] keys;
+    private Container[] containers;
+    private int size;
+
+    public IdBitmap() {
+        this(4);
+    }
+
+    private IdBitmap(int capacity) {
+        keys = new int[capacity];
+        containers = new Container[capacity];
+    }
+
+    /**
+     * Bitmap of {@code ids}, which need not be sorted.
+     */
+    public static IdBitmap of(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        IdBitmap bitmap = new IdBitmap();
+        for (long id : sorted)
+            bitmap.add(id);
+        return bitmap;
+    }
+
+    public void add(long id) {
+        int key = high(id);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new ArrayContainer());
+        }
+        containers[i] = containers[i].add(low(id));
+    }
+
+    public void remove(long id) {
+        int i = find(high(id));
+        if (i < 0)
+            return;
+        Container container = containers[i].remove(low(id));
+        if (container.cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    public boolean contains(long id) {
+        int i = find(high(id));
+        return i >= 0 && containers[i].contains(low(id));
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++)
+            cardinality += containers[i].cardinality();
+        return cardinality;
+    }
+
+    public IdBitmap copy() {
+        IdBitmap copy = new IdBitmap(Math.max(4, size));
+        for (int i = 0; i < size; i++) {
+            copy.keys[i] = keys[i];
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    public IdBitmap and(IdBitmap other) {
+        IdBitmap result = new IdBitmap(Math.max(4, Math.min(size, other.size)));
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0)
+                    result.append(keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public IdBitmap or(IdBitmap other) {
+        IdBitmap result = new IdBitmap(Math.max(4, size + other.size));
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i >= size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public int andCardinality(IdBitmap other) {
+        int cardinality = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * The ids in ascending order.
+     */
+    public long[] toArray() {
+        long[] ids = new long[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++)
+            n = containers[i].fill(ids, n, (long) keys[i] << 16);
+        return ids;
+    }
+
+    /**
+     * The elements of {@code ids} that are in this bitmap, in their original order.
+     */
+    public long[] retain(long[] ids) {
+        long[] kept = new long[ids.length];
+        int n = 0;
+        for (long id : ids)
+            if (contains(id))
+                kept[n++] = id;
+        return n == ids.length ? ids : Arrays.copyOf(kept, n);
+    }
+
+    private static int high(long id) {
+        return (int) (id >>> 16);
+    }
+
+    private static char low(long id) {
+        return (char) id;
+    }
+
+    private int find(int key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int i, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private void append(int key, Container container) {
+        insert(size, key, container);
+    }
+
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container copy();
+
+        abstract int fill(long[] ids, int offset, long base);
+
+        abstract long[] bits();
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer array)
+                return array.filter(other);
+            if (other instanceof ArrayContainer array)
+                return array.filter(this);
+            long[] a = bits(), b = other.bits();
+            long[] result = new long[1024];
+            for (int i = 0; i < 1024; i++)
+                result[i] = a[i] & b[i];
+            return BitmapContainer.of(result);
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer a && other instanceof ArrayContainer b
+                    && a.cardinality + b.cardinality <= ARRAY_MAX)
+                return a.merge(b);
+            long[] result = bits().clone();
+            long[] b = other.bits();
+            for (int i = 0; i < 1024; i++)
+                result[i] |= b[i];
+            return BitmapContainer.of(result);
+        }
+
+        int andCardinality(Container other) {
+            if (this instanceof ArrayContainer array)
+                return array.count(other);
+            if (other instanceof ArrayContainer array)
+                return array.count(this);
+            long[] a = bits(), b = other.bits();
+            int cardinality = 0;
+            for (int i = 0; i < 1024; i++)
+                cardinality += Long.bitCount(a[i] & b[i]);
+            return cardinality;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0)
+                return this;
+            if (cardinality == ARRAY_MAX) {
+                BitmapContainer bitmap = new BitmapContainer(bits(), cardinality);
+                return bitmap.add(value);
+            }
+            i = -i - 1;
+            if (cardinality == values.length)
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        int fill(long[] ids, int offset, long base) {
+            for (int i = 0; i < cardinality; i++)
+                ids[offset++] = base | values[i];
+            return offset;
+        }
+
+        @Override
+        long[] bits() {
+            long[] bits = new long[1024];
+            for (int i = 0; i < cardinality; i++)
+                bits[values[i] >>> 6] |= 1L << values[i];
+            return bits;
+        }
+
+        ArrayContainer filter(Container other) {
+            char[] kept = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++)
+                if (other.contains(values[i]))
+                    kept[n++] = values[i];
+            return new ArrayContainer(kept, n);
+        }
+
+        int count(Container other) {
+            int n = 0;
+            for (int i = 0; i < cardinality; i++)
+                if (other.contains(values[i]))
+                    n++;
+            return n;
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            char[] merged = new char[Math.max(4, cardinality + other.cardinality)];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j >= other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                    merged[n++] = values[i++];
+                } else if (i >= cardinality || values[i] > other.values[j]) {
+                    merged[n++] = other.values[j++];
+                } else {
+                    merged[n++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(merged, n);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        // sparse results go back to the array form
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words)
+                cardinality += Long.bitCount(word);
+            if (cardinality > ARRAY_MAX)
+                return new BitmapContainer(words, cardinality);
+            char[] values = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int i = 0; i < 1024; i++)
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    values[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+            return new ArrayContainer(values, n);
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                if (--cardinality <= ARRAY_MAX)
+                    return of(words);
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int fill(long[] ids, int offset, long base) {
+            for (int i = 0; i < 1024; i++)
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    ids[offset++] = base | ((long) i << 6) + Long.numberOfTrailingZeros(word);
+            return offset;
+        }
+
+        @Override
+        long[] bits() {
+            return words;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ratefood.app.index;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Helpers for paging over id lists produced by the in-memory indexes and loading the page rows by id.
+ */
+public final class IdPages {
+
+    private IdPages() {
+    }
+
+    public static long[] slice(long[] ids, Pageable pageable) {
+        if (pageable.isUnpaged())
+            return ids;
+        int from = (int) Math.min(pageable.getOffset(), ids.length);
+        int to = Math.min(from + pageable.getPageSize(), ids.length);
+        return Arrays.copyOfRange(ids, from, to);
+    }
+
+    /**
+     * The distinct ids of a request in first-seen order.
+     */
+    public static long[] distinct(List<Long> ids) {
+        return ids.stream().filter(Objects::nonNull).mapToLong(Long::longValue).distinct().toArray();
+    }
+
+    public static List<Long> boxed(long[] ids) {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids)
+            list.add(id);
+        return list;
+    }
+
+    /**
+     * The requested page of {@code ids}, with its rows loaded through {@code loader} in id-list order.
+     */
+    public static <T> Page<T> page(long[] ids, Pageable pageable, Function<List<Long>, List<T>> loader,
+                                   ToLongFunction<T> idOf) {
+        long[] pageIds = slice(ids, pageable);
+        if (pageIds.length == 0)
+            return new PageImpl<>(List.of(), pageable, ids.length);
+        return new PageImpl<>(inOrder(pageIds, loader.apply(boxed(pageIds)), idOf), pageable, ids.length);
+    }
+
+    /**
+     * Reorders rows loaded with an {@code IN} query to follow {@code ids}; ids without a row are skipped.
+     */
+    public static <T> List<T> inOrder(long[] ids, List<T> rows, ToLongFunction<T> idOf) {
+        Map<Long, T> byId = new HashMap<>(rows.size() * 2);
+        for (T row : rows)
+            byId.put(idOf.applyAsLong(row), row);
+        List<T> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            T row = byId.get(id);
+            if (row != null)
+                ordered.add(row);
+        }
+        return ordered;
+    }
+
+    /**
+     * The ids without a row, given the rows {@link #inOrder} returned for them.
+     */
+    public static <T> List<Long> missing(long[] ids, List<T> ordered, ToLongFunction<T> idOf) {
+        List<Long> missing = new ArrayList<>();
+        int i = 0;
+        for (long id : ids) {
+            if (i < ordered.size() && idOf.applyAsLong(ordered.get(i)) == id)
+                i++;
+            else
+                missing.add(id);
+        }
+        return missing;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ratefood.app.index;
+
+/**
+ * Fixed-capacity open-addressing map from int to int with linear probing. Keys must be non-zero,
+ * zero marks an empty slot.
+ */
+final class IntIntMap {
+
+    private final int[] keys;
+    private final int[] values;
+    private final int mask;
+
+    IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    void put(int key, int value) {
+        if (key == 0)
+            throw new IllegalArgumentException("key must be non-zero");
+        int slot = slot(key);
+        while (keys[slot] != 0 && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    int get(int key, int missing) {
+        if (key == 0)
+            return missing;
+        for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return values[slot];
+        }
+        return missing;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,46 @@
+package com.ratefood.app.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive longs.
+ */
+final class LongList {
+
+    private long[] values;
+    private int size;
+
+    LongList() {
+        this(16);
+    }
+
+    LongList(int capacity) {
+        this.values = new long[Math.max(capacity, 1)];
+    }
+
+    void add(long value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size << 1);
+        values[size++] = value;
+    }
+
+    long get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    void sort(int from) {
+        Arrays.sort(values, from, size);
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
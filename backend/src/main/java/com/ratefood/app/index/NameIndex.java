@@ -0,0 +1,248 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.repository.DishRepository;
+import com.ratefood.app.repository.RestaurantRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-city trigram index over dish and restaurant names, answering the {@code name} substring filter
+ * of the listings without a {@code LIKE '%...%'} scan. Rows added on this instance are indexed as they
+ * are created; the whole index is rebuilt from the tables periodically to pick up rows created or
+ * imported on other instances, and swapped in once built.
+ */
+@Slf4j
+@Component
+public class NameIndex {
+
+    private static final long[] NONE = new long[0];
+
+    @Autowired
+    private DishRepository dishRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    private volatile Map<String, TrigramIndex> dishes = new ConcurrentHashMap<>();
+    private volatile Map<String, TrigramIndex> restaurants = new ConcurrentHashMap<>();
+    // rows added while a rebuild scans the tables, replayed onto the rebuilt index; guarded by this
+    private List<Added> addedDuringLoad;
+
+    private record Added(boolean dish, String city, long id, String name, long restaurantId) {
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${ratefood.names.rebuild-interval-ms:600000}",
+            fixedDelayString = "${ratefood.names.rebuild-interval-ms:600000}")
+    public void load() {
+        synchronized (this) {
+            addedDuringLoad = new ArrayList<>();
+        }
+        Map<String, TrigramIndex> loadedRestaurants = new ConcurrentHashMap<>();
+        Map<String, TrigramIndex> loadedDishes = new ConcurrentHashMap<>();
+        Set<Long> restaurantIds = new HashSet<>();
+        Set<Long> dishIds = new HashSet<>();
+        try {
+            for (RestaurantRepository.NameEntry entry : restaurantRepository.findAllNames()) {
+                restaurantIds.add(entry.getId());
+                add(loadedRestaurants, entry.getCity(), entry.getId(), entry.getName(), 0);
+            }
+            for (DishRepository.NameEntry entry : dishRepository.findAllNames()) {
+                dishIds.add(entry.getId());
+                add(loadedDishes, entry.getCity(), entry.getId(), entry.getName(), entry.getRestaurantId());
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                addedDuringLoad = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            // the scan may already have seen them
+            for (Added added : addedDuringLoad) {
+                if ((added.dish() ? dishIds : restaurantIds).add(added.id()))
+                    add(added.dish() ? loadedDishes : loadedRestaurants, added.city(), added.id(), added.name(),
+                            added.restaurantId());
+            }
+            addedDuringLoad = null;
+            restaurants = loadedRestaurants;
+            dishes = loadedDishes;
+        }
+        log.info("name index loaded {} restaurants and {} dishes", restaurantIds.size(), dishIds.size());
+    }
+
+    public synchronized void addRestaurant(String city, long id, String name) {
+        if (addedDuringLoad != null)
+            addedDuringLoad.add(new Added(false, city, id, name, 0));
+        add(restaurants, city, id, name, 0);
+    }
+
+    public synchronized void addDish(String city, long id, String name, long restaurantId) {
+        if (addedDuringLoad != null)
+            addedDuringLoad.add(new Added(true, city, id, name, restaurantId));
+        add(dishes, city, id, name, restaurantId);
+    }
+
+    private static void add(Map<String, TrigramIndex> index, String city, long id, String name, long owner) {
+        if (city == null)
+            return;
+        index.computeIfAbsent(CityKey.of(city), k -> new TrigramIndex()).add(id, name, owner);
+    }
+
+    /**
+     * Ids of the city's dishes whose name contains {@code name}, ignoring case, in ascending order.
+     */
+    public long[] dishes(String city, String name) {
+        TrigramIndex index = dishes.get(CityKey.of(city));
+        return index == null ? NONE : index.search(normalize(name));
+    }
+
+    /**
+     * Ids of the city's restaurants whose name contains {@code name}, ignoring case, in ascending order.
+     */
+    public long[] restaurants(String city, String name) {
+        TrigramIndex index = restaurants.get(CityKey.of(city));
+        return index == null ? NONE : index.search(normalize(name));
+    }
+
+    /**
+     * Dish ids of the given restaurants in restaurant order, optionally restricted to names containing {@code name}.
+     */
+    public long[] dishesOfRestaurants(String city, long[] restaurantIds, String name) {
+        TrigramIndex index = dishes.get(CityKey.of(city));
+        return index == null ? NONE : index.ofOwners(restaurantIds, name == null || name.isEmpty() ? null : normalize(name));
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static final class TrigramIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, IntList> postings = new HashMap<>();
+        private final Map<Long, IntList> byOwner = new HashMap<>();
+        private long[] ids = new long[16];
+        private String[] names = new String[16];
+        private int size;
+
+        void add(long id, String name, long owner) {
+            String normalized = name == null ? "" : normalize(name);
+            lock.writeLock().lock();
+            try {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size << 1);
+                    names = Arrays.copyOf(names, size << 1);
+                }
+                int ord = size++;
+                ids[ord] = id;
+                names[ord] = normalized;
+                Set<Long> seen = new HashSet<>();
+                for (int i = 0; i + 3 <= normalized.length(); i++) {
+                    long gram = trigram(normalized, i);
+                    if (seen.add(gram))
+                        postings.computeIfAbsent(gram, k -> new IntList()).add(ord);
+                }
+                if (owner != 0)
+                    byOwner.computeIfAbsent(owner, k -> new IntList()).add(ord);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        long[] search(String query) {
+            lock.readLock().lock();
+            try {
+                LongList result = new LongList();
+                if (query.length() < 3) {
+                    // too short for a trigram, a scan over the in-memory names is still cheap
+                    for (int ord = 0; ord < size; ord++)
+                        if (names[ord].contains(query))
+                            result.add(ids[ord]);
+                } else {
+                    int[] candidates = candidates(query);
+                    for (int ord : candidates)
+                        if (names[ord].contains(query))
+                            result.add(ids[ord]);
+                }
+                result.sort();
+                return result.toArray();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long[] ofOwners(long[] owners, String query) {
+            lock.readLock().lock();
+            try {
+                LongList result = new LongList();
+                for (long owner : owners) {
+                    IntList ords = byOwner.get(owner);
+                    if (ords == null)
+                        continue;
+                    for (int i = 0; i < ords.size(); i++) {
+                        int ord = ords.get(i);
+                        if (query == null || names[ord].contains(query))
+                            result.add(ids[ord]);
+                    }
+                }
+                return result.toArray();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // intersection of the posting lists of every trigram in the query, smallest list first
+        private int[] candidates(String query) {
+            Set<Long> grams = new HashSet<>();
+            for (int i = 0; i + 3 <= query.length(); i++)
+                grams.add(trigram(query, i));
+            IntList[] lists = new IntList[grams.size()];
+            int n = 0;
+            for (long gram : grams) {
+                IntList list = postings.get(gram);
+                if (list == null)
+                    return new int[0];
+                lists[n++] = list;
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+            int[] result = lists[0].toArray();
+            int length = result.length;
+            for (int l = 1; l < lists.length && length > 0; l++) {
+                IntList list = lists[l];
+                int kept = 0, j = 0;
+                for (int i = 0; i < length && j < list.size(); ) {
+                    int a = result[i], b = list.get(j);
+                    if (a == b) {
+                        result[kept++] = a;
+                        i++;
+                        j++;
+                    } else if (a < b) {
+                        i++;
+                    } else {
+                        j++;
+                    }
+                }
+                length = kept;
+            }
+            return Arrays.copyOf(result, length);
+        }
+    }
+}
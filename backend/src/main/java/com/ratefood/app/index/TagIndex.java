@@ -0,0 +1,275 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.repository.DishRepository;
+import com.ratefood.app.repository.RestaurantRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-city tag dictionaries of dishes and restaurants. Tags are matched ignoring case and surrounding
+ * blanks; each distinct tag gets an int code and an {@link IdBitmap} of the ids carrying it, so tag
+ * filters are bitmap intersections or unions and facet counts are intersection cardinalities. The
+ * dictionaries are rebuilt from the tables periodically, to pick up tags set on other instances.
+ */
+@Slf4j
+@Component
+public class TagIndex {
+
+    @Autowired
+    private DishRepository dishRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    private volatile Map<String, TagSet> dishes = new ConcurrentHashMap<>();
+    private volatile Map<String, TagSet> restaurants = new ConcurrentHashMap<>();
+    // tags set while a rebuild scans the tables, replayed in order onto the rebuilt sets; guarded by this
+    private List<Change> changedDuringLoad;
+
+    private record Change(boolean dish, String city, long id, List<String> tags) {
+    }
+
+    /**
+     * Tags a listing must carry, all of them or any of them.
+     */
+    public record Filter(List<String> tags, boolean any) {
+
+        /**
+         * Null when no tag is given.
+         */
+        public static Filter of(List<String> tags, boolean any) {
+            if (tags == null)
+                return null;
+            List<String> normalized = tags.stream()
+                    .map(TagIndex::normalize)
+                    .filter(tag -> !tag.isEmpty())
+                    .distinct()
+                    .sorted()
+                    .toList();
+            return normalized.isEmpty() ? null : new Filter(normalized, any);
+        }
+
+        @Override
+        public String toString() {
+            return (any ? "any:" : "all:") + String.join(",", tags);
+        }
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${ratefood.tags.rebuild-interval-ms:600000}",
+            fixedDelayString = "${ratefood.tags.rebuild-interval-ms:600000}")
+    public void load() {
+        synchronized (this) {
+            changedDuringLoad = new ArrayList<>();
+        }
+        Map<String, TagSet> loadedRestaurants = new ConcurrentHashMap<>();
+        Map<String, TagSet> loadedDishes = new ConcurrentHashMap<>();
+        int restaurantCount = 0, dishCount = 0;
+        try {
+            for (RestaurantRepository.TagEntry entry : restaurantRepository.findAllTags()) {
+                if (entry.getCity() != null && entry.getTags() != null) {
+                    tagSet(loadedRestaurants, entry.getCity()).set(entry.getId(), entry.getTags(), true);
+                    restaurantCount++;
+                }
+            }
+            for (DishRepository.TagEntry entry : dishRepository.findAllTags()) {
+                if (entry.getCity() != null && entry.getTags() != null) {
+                    tagSet(loadedDishes, entry.getCity()).set(entry.getId(), entry.getTags(), true);
+                    dishCount++;
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringLoad = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            // the scan may have read the tags before they changed, the replay leaves the latest ones
+            for (Change change : changedDuringLoad)
+                tagSet(change.dish() ? loadedDishes : loadedRestaurants, change.city()).set(change.id(), change.tags(), false);
+            changedDuringLoad = null;
+            restaurants = loadedRestaurants;
+            dishes = loadedDishes;
+        }
+        log.info("tag index loaded {} tagged restaurants and {} tagged dishes", restaurantCount, dishCount);
+    }
+
+    /**
+     * Replaces the tags of a dish, on creation or update.
+     */
+    public synchronized void setDishTags(String city, long id, List<String> tags) {
+        if (city == null)
+            return;
+        if (changedDuringLoad != null)
+            changedDuringLoad.add(new Change(true, city, id, tags));
+        tagSet(dishes, city).set(id, tags, false);
+    }
+
+    public synchronized void setRestaurantTags(String city, long id, List<String> tags) {
+        if (city == null)
+            return;
+        if (changedDuringLoad != null)
+            changedDuringLoad.add(new Change(false, city, id, tags));
+        tagSet(restaurants, city).set(id, tags, false);
+    }
+
+    /**
+     * Ids of the city's dishes matching {@code filter}, as a bitmap owned by the caller.
+     */
+    public IdBitmap dishes(String city, Filter filter) {
+        TagSet tagSet = dishes.get(CityKey.of(city));
+        return tagSet == null ? new IdBitmap() : tagSet.match(filter);
+    }
+
+    public IdBitmap restaurants(String city, Filter filter) {
+        TagSet tagSet = restaurants.get(CityKey.of(city));
+        return tagSet == null ? new IdBitmap() : tagSet.match(filter);
+    }
+
+    /**
+     * Number of dishes per tag among {@code within}, or among all the city's dishes when it is null,
+     * most frequent tag first.
+     */
+    public Map<String, Integer> dishFacets(String city, IdBitmap within) {
+        TagSet tagSet = dishes.get(CityKey.of(city));
+        return tagSet == null ? Map.of() : tagSet.facets(within);
+    }
+
+    public Map<String, Integer> restaurantFacets(String city, IdBitmap within) {
+        TagSet tagSet = restaurants.get(CityKey.of(city));
+        return tagSet == null ? Map.of() : tagSet.facets(within);
+    }
+
+    /**
+     * Stored spellings of each filter tag, for matching the tag column in SQL.
+     */
+    public List<List<String>> dishSpellings(String city, Filter filter) {
+        TagSet tagSet = dishes.get(CityKey.of(city));
+        return tagSet == null ? spellingsOf(filter) : tagSet.spellings(filter);
+    }
+
+    public List<List<String>> restaurantSpellings(String city, Filter filter) {
+        TagSet tagSet = restaurants.get(CityKey.of(city));
+        return tagSet == null ? spellingsOf(filter) : tagSet.spellings(filter);
+    }
+
+    private static TagSet tagSet(Map<String, TagSet> sets, String city) {
+        return sets.computeIfAbsent(CityKey.of(city), k -> new TagSet());
+    }
+
+    private static List<List<String>> spellingsOf(Filter filter) {
+        return filter.tags().stream().map(List::of).toList();
+    }
+
+    static String normalize(String tag) {
+        return tag == null ? "" : tag.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class TagSet {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<IdBitmap> bitmaps = new ArrayList<>();
+        private final List<Set<String>> spellings = new ArrayList<>();
+
+        // a fresh id has no previous tags to clear
+        void set(long id, List<String> tags, boolean fresh) {
+            lock.writeLock().lock();
+            try {
+                if (!fresh)
+                    for (IdBitmap bitmap : bitmaps)
+                        bitmap.remove(id);
+                if (tags == null)
+                    return;
+                for (String tag : tags) {
+                    String name = normalize(tag);
+                    if (name.isEmpty())
+                        continue;
+                    int code = codes.computeIfAbsent(name, n -> {
+                        names.add(n);
+                        bitmaps.add(new IdBitmap());
+                        spellings.add(new LinkedHashSet<>());
+                        return names.size() - 1;
+                    });
+                    bitmaps.get(code).add(id);
+                    spellings.get(code).add(tag);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        IdBitmap match(Filter filter) {
+            lock.readLock().lock();
+            try {
+                IdBitmap result = null;
+                for (String tag : filter.tags()) {
+                    Integer code = codes.get(tag);
+                    if (code == null) {
+                        if (filter.any())
+                            continue;
+                        return new IdBitmap();
+                    }
+                    IdBitmap bitmap = bitmaps.get(code);
+                    if (result == null)
+                        result = bitmap.copy();
+                    else
+                        result = filter.any() ? result.or(bitmap) : result.and(bitmap);
+                }
+                return result == null ? new IdBitmap() : result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Map<String, Integer> facets(IdBitmap within) {
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (int code = 0; code < names.size(); code++) {
+                    IdBitmap bitmap = bitmaps.get(code);
+                    int count = within == null ? bitmap.cardinality() : bitmap.andCardinality(within);
+                    if (count > 0)
+                        counts.add(Map.entry(names.get(code), count));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+            Map<String, Integer> facets = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> count : counts)
+                facets.put(count.getKey(), count.getValue());
+            return facets;
+        }
+
+        List<List<String>> spellings(Filter filter) {
+            lock.readLock().lock();
+            try {
+                List<List<String>> result = new ArrayList<>(filter.tags().size());
+                for (String tag : filter.tags()) {
+                    Integer code = codes.get(tag);
+                    result.add(code == null ? List.of(tag) : List.copyOf(spellings.get(code)));
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
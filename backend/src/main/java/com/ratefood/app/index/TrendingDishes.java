@@ -0,0 +1,95 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.dto.response.DishResponseDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dishes with the most vote and view activity in a city over the last hour or day. Every city active
+ * since startup gets one {@link DecayingTopK} per window, so memory is bounded by the number of cities,
+ * not dishes. Activity is not persisted; after a restart trends build up again from new events.
+ */
+@Component
+public class TrendingDishes {
+
+    public enum Window {
+        HOUR(Duration.ofHours(1)), DAY(Duration.ofDays(1));
+
+        final long tauMillis;
+
+        Window(Duration window) {
+            this.tauMillis = window.toMillis();
+        }
+    }
+
+    @Autowired
+    private DishRanking dishRanking;
+
+    @Value("${ratefood.trending.size:50}")
+    private int size;
+
+    @Value("${ratefood.trending.sketch-width:256}")
+    private int sketchWidth;
+
+    @Value("${ratefood.trending.sketch-depth:4}")
+    private int sketchDepth;
+
+    // decayed activity below this, in views, doesn't count as trending
+    @Value("${ratefood.trending.min-count:1}")
+    private double minCount;
+
+    @Value("${ratefood.trending.vote-weight:5}")
+    private double voteWeight;
+
+    @Value("${ratefood.trending.view-weight:1}")
+    private double viewWeight;
+
+    private final Map<String, DecayingTopK[]> cities = new ConcurrentHashMap<>();
+
+    public void vote(long dishId) {
+        record(dishId, voteWeight);
+    }
+
+    public void view(long dishId) {
+        record(dishId, viewWeight);
+    }
+
+    /**
+     * The requested page of the city's trending dishes, most active first. There are at most
+     * {@code ratefood.trending.size} of them.
+     */
+    public Page<DishResponseDTO> trending(String city, Window window, Pageable pageable) {
+        DecayingTopK[] trackers = cities.get(CityKey.of(city));
+        if (trackers == null)
+            return new PageImpl<>(List.of(), pageable, 0);
+        long[] ids = trackers[window.ordinal()].top(System.currentTimeMillis(), minCount);
+        return new PageImpl<>(dishRanking.dishes(IdPages.slice(ids, pageable)), pageable, ids.length);
+    }
+
+    // events for dishes whose city isn't known yet are dropped
+    private void record(long dishId, double weight) {
+        String city = dishRanking.cityOf(dishId);
+        if (city == null)
+            return;
+        long now = System.currentTimeMillis();
+        for (DecayingTopK tracker : cities.computeIfAbsent(city, k -> trackers(now)))
+            tracker.add(dishId, weight, now);
+    }
+
+    private DecayingTopK[] trackers(long now) {
+        Window[] windows = Window.values();
+        DecayingTopK[] trackers = new DecayingTopK[windows.length];
+        for (Window window : windows)
+            trackers[window.ordinal()] = new DecayingTopK(window.tauMillis, size, sketchWidth, sketchDepth, now);
+        return trackers;
+    }
+}
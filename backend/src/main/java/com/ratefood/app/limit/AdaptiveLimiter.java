@@ -0,0 +1,139 @@
+package com.ratefood.app.limit;
+
+import com.ratefood.app.dto.response.LimiterStatsDTO;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit of one endpoint, adjusted from the database time of its requests. A slow moving average
+ * tracks the time the endpoint spends in the database when it keeps up and a fast one the current time; their
+ * ratio shrinks the limit as soon as requests start queueing in the pools behind it, and a headroom of
+ * sqrt(limit) lets it grow back while latency stays flat. Requests over the limit wait in a bounded queue
+ * for a bounded time and are rejected after that.
+ */
+public class AdaptiveLimiter {
+
+    private static final double FAST_WEIGHT = 0.1;
+    private static final double SLOW_WEIGHT = 0.01;
+    private static final double SMOOTHING = 0.2;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    // guarded by lock
+    private double limit;
+    private int inflight;
+    private int queued;
+    private double fastNanos;
+    private double slowNanos;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+    }
+
+    /**
+     * Takes a slot, waiting at most {@code maxWaitMillis} for one. Returns false when the request is shed.
+     */
+    public boolean acquire(long maxWaitMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inflight >= (int) limit) {
+                if (queued >= maxQueue) {
+                    rejected.increment();
+                    return false;
+                }
+                queued++;
+                try {
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                    while (inflight >= (int) limit) {
+                        if (remaining <= 0) {
+                            rejected.increment();
+                            return false;
+                        }
+                        remaining = released.awaitNanos(remaining);
+                    }
+                } finally {
+                    queued--;
+                }
+            }
+            inflight++;
+            accepted.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot taken by {@link #acquire(long)} without a latency sample, for requests that did not
+     * reach the database.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inflight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot taken by {@link #acquire(long)} and feeds the request latency into the limit.
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inflight >= (int) limit / 2;
+            inflight--;
+            if (slowNanos == 0) {
+                fastNanos = latencyNanos;
+                slowNanos = latencyNanos;
+            } else {
+                fastNanos += FAST_WEIGHT * (latencyNanos - fastNanos);
+                slowNanos += SLOW_WEIGHT * (latencyNanos - slowNanos);
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, slowNanos / fastNanos));
+            double target = limit * gradient + Math.sqrt(limit);
+            // an endpoint using a fraction of its limit says nothing about whether a higher one is safe
+            if (target > limit && !saturated)
+                target = limit;
+            limit = Math.max(minLimit, Math.min(maxLimit, (1 - SMOOTHING) * limit + SMOOTHING * target));
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public LimiterStatsDTO stats() {
+        lock.lock();
+        try {
+            return LimiterStatsDTO.builder()
+                    .endpoint(name)
+                    .limit((int) limit)
+                    .inflight(inflight)
+                    .queued(queued)
+                    .accepted(accepted.sum())
+                    .rejected(rejected.sum())
+                    .latencyMs(fastNanos / 1e6)
+                    .baselineLatencyMs(slowNanos / 1e6)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
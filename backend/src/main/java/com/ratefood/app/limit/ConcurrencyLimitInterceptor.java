@@ -0,0 +1,115 @@
+package com.ratefood.app.limit;
+
+import com.ratefood.app.query.QueryStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts an {@link AdaptiveLimiter} in front of every mapped endpoint, keyed by method and path pattern.
+ * Shed requests get a 503 with Retry-After instead of waiting on an exhausted connection pool. Limits adapt
+ * to the JDBC time {@link QueryStats} measured for the request; requests that ran no SQL, like cache hits
+ * and 304s, leave them alone. Without query accounting they adapt to the request latency instead. The slot is held as a {@link Permit} that work the request hands to other
+ * threads can keep taken past the response. Each limiter is published as {@code ratefood.limiter.*}
+ * meters tagged with the endpoint.
+ */
+@Component
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ratefood.limiter.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${ratefood.limiter.min-limit:4}")
+    private int minLimit;
+
+    @Value("${ratefood.limiter.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${ratefood.limiter.max-queue:50}")
+    private int maxQueue;
+
+    @Value("${ratefood.limiter.max-wait-ms:200}")
+    private long maxWaitMillis;
+
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null)
+            return true;
+        String endpoint = request.getMethod() + " " + pattern;
+        AdaptiveLimiter limiter = limiters.computeIfAbsent(endpoint, this::register);
+        if (!limiter.acquire(maxWaitMillis)) {
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "too many concurrent requests");
+            return false;
+        }
+        // query accounting runs first, its stats are already started
+        Permit permit = new Permit(limiter, QueryStats.current());
+        request.setAttribute(PERMIT, permit);
+        Permit.bind(permit);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit != null) {
+            request.removeAttribute(PERMIT);
+            Permit.unbind();
+            permit.release();
+        }
+    }
+
+    private AdaptiveLimiter register(String endpoint) {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(endpoint, initialLimit, minLimit, maxLimit, maxQueue);
+        Tags tags = Tags.of("endpoint", endpoint);
+        Gauge.builder("ratefood.limiter.limit", limiter, l -> l.stats().getLimit())
+                .description("Concurrency limit of the endpoint")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("ratefood.limiter.inflight", limiter, l -> l.stats().getInflight())
+                .description("Requests holding a slot")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("ratefood.limiter.queued", limiter, l -> l.stats().getQueued())
+                .description("Requests waiting for a slot")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder("ratefood.limiter.requests", limiter, l -> l.stats().getAccepted())
+                .description("Requests admitted or shed by the limiter")
+                .tags(tags)
+                .tag("outcome", "accepted")
+                .register(meterRegistry);
+        FunctionCounter.builder("ratefood.limiter.requests", limiter, l -> l.stats().getRejected())
+                .description("Requests admitted or shed by the limiter")
+                .tags(tags)
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+        TimeGauge.builder("ratefood.limiter.latency", limiter, TimeUnit.MILLISECONDS, l -> l.stats().getLatencyMs())
+                .description("Recent JDBC time per request the limit adapts to")
+                .tags(tags)
+                .register(meterRegistry);
+        return limiter;
+    }
+}
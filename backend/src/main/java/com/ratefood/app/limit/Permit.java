@@ -0,0 +1,61 @@
+package com.ratefood.app.limit;
+
+import com.ratefood.app.query.QueryStats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The slot a request took from its endpoint's {@link AdaptiveLimiter}. Work the request hands to other
+ * threads takes a {@link #hold()} on it, and the slot is only given back once the request has completed
+ * and every hold is released, so work that outlives the response still counts against the limit. The
+ * latency sample is taken then, from the JDBC time of the request and its attached work.
+ */
+public final class Permit {
+
+    private static final ThreadLocal<Permit> CURRENT = new ThreadLocal<>();
+
+    private final AdaptiveLimiter limiter;
+    private final QueryStats stats;
+    private final long started = System.nanoTime();
+    // the request itself and one per hold
+    private final AtomicInteger holders = new AtomicInteger(1);
+
+    Permit(AdaptiveLimiter limiter, QueryStats stats) {
+        this.limiter = limiter;
+        this.stats = stats;
+    }
+
+    /**
+     * The permit of the request running on the current thread, null when its endpoint is not limited.
+     */
+    public static Permit current() {
+        return CURRENT.get();
+    }
+
+    static void bind(Permit permit) {
+        CURRENT.set(permit);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Keeps the slot taken until a matching {@link #release()}.
+     */
+    public void hold() {
+        holders.incrementAndGet();
+    }
+
+    public void release() {
+        if (holders.decrementAndGet() > 0)
+            return;
+        if (stats == null)
+            // without query accounting only the request latency is known
+            limiter.release(System.nanoTime() - started);
+        else if (stats.getStatements() > 0)
+            limiter.release(stats.getJdbcNanos());
+        else
+            limiter.release();
+    }
+}
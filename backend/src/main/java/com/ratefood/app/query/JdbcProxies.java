@@ -0,0 +1,99 @@
+package com.ratefood.app.query;
+
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Dynamic proxies around the JDBC objects handed out by a {@link DataSource} that report every executed
+ * statement and every fetched row to the {@link QueryStats} of the current request. Outside a request they
+ * only delegate.
+ */
+public final class JdbcProxies {
+
+    private JdbcProxies() {
+    }
+
+    /**
+     * Wraps the data source behind every interface its class implements, so pool specific ones like
+     * {@link java.io.Closeable} keep working.
+     */
+    public static DataSource dataSource(DataSource target) {
+        return proxy(target, ClassUtils.getAllInterfaces(target), (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection connection ? connection(connection) : result;
+        });
+    }
+
+    private static Connection connection(Connection target) {
+        return proxy(target, new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof Statement statement) {
+                // prepareStatement and prepareCall take the SQL up front, createStatement gets it on execute
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                return statement(statement, sql);
+            }
+            return result;
+        });
+    }
+
+    private static Statement statement(Statement target, String preparedSql) {
+        return proxy(target, ClassUtils.getAllInterfaces(target), (proxy, method, args) -> {
+            QueryStats stats = QueryStats.current();
+            if (stats == null)
+                return invoke(target, method, args);
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+                long started = System.nanoTime();
+                try {
+                    return wrapResultSet(invoke(target, method, args));
+                } finally {
+                    stats.statement(sql, System.nanoTime() - started);
+                }
+            }
+            Object result = invoke(target, method, args);
+            return name.equals("getResultSet") ? wrapResultSet(result) : result;
+        });
+    }
+
+    private static Object wrapResultSet(Object result) {
+        if (!(result instanceof ResultSet target))
+            return result;
+        return proxy(target, new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            Object value = invoke(target, method, args);
+            if (Boolean.TRUE.equals(value) && method.getName().equals("next")) {
+                QueryStats stats = QueryStats.current();
+                if (stats != null)
+                    stats.row();
+            }
+            return value;
+        });
+    }
+
+    // identity equality, so the proxies can be tracked in hash based collections like the raw objects
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, Class<?>[] interfaces, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(JdbcProxies.class.getClassLoader(), interfaces, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> handler.invoke(proxy, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ratefood.app.query;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the {@link QueryStats} of every request to a controller method and records them as metrics
+ * tagged with the method, e.g. {@code /actuator/metrics/ratefood.request.sql.statements?tag=handler:DishController.getDishes}.
+ * A request running one statement shape more than {@code repeat-threshold} times is logged as a likely N+1.
+ */
+@Slf4j
+@Component
+public class QueryAccountingInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ratefood.query-stats.repeat-threshold:10}")
+    private int repeatThreshold;
+
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    private record Meters(DistributionSummary statements, DistributionSummary rows, Timer time, Counter repeated) {
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod method)
+            QueryStats.start(method.getBeanType().getSimpleName() + "." + method.getMethod().getName());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryStats stats = QueryStats.end();
+        if (stats == null)
+            return;
+        Meters handlerMeters = meters.computeIfAbsent(stats.getHandler(), this::register);
+        handlerMeters.statements().record(stats.getStatements());
+        handlerMeters.rows().record(stats.getRows());
+        handlerMeters.time().record(stats.getJdbcNanos(), TimeUnit.NANOSECONDS);
+        stats.getShapeCounts().forEach((shape, count) -> {
+            if (count > repeatThreshold) {
+                handlerMeters.repeated().increment();
+                log.warn("{} {} ran the same statement {} times in {}: {}", request.getMethod(),
+                        request.getRequestURI(), count, stats.getHandler(), shape);
+            }
+        });
+    }
+
+    private Meters register(String handler) {
+        return new Meters(
+                DistributionSummary.builder("ratefood.request.sql.statements")
+                        .description("SQL statements executed per request")
+                        .tag("handler", handler)
+                        .publishPercentiles(0.5, 0.9, 0.99)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                DistributionSummary.builder("ratefood.request.sql.rows")
+                        .description("Rows fetched per request")
+                        .tag("handler", handler)
+                        .publishPercentiles(0.5, 0.9, 0.99)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                Timer.builder("ratefood.request.sql.time")
+                        .description("Time spent executing SQL per request")
+                        .tag("handler", handler)
+                        .publishPercentiles(0.5, 0.9, 0.99)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                Counter.builder("ratefood.request.sql.repeated")
+                        .description("Statement shapes run more than the repeat threshold within one request")
+                        .tag("handler", handler)
+                        .register(meterRegistry));
+    }
+}
@@ -0,0 +1,108 @@
+package com.ratefood.app.query;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * SQL statements, rows and JDBC time of the request running on the current thread. Statements are also
+ * counted by shape, their text with literals and IN lists collapsed, so a loop issuing the same query per
+ * row shows up however its parameters differ. Work a request hands to other threads can {@link #attach}
+ * its stats there, so the counters are updated under the stats' monitor.
+ */
+public class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MAX_CACHED_SHAPES = 1000;
+    private static final Map<String, String> SHAPES = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String handler;
+    private int statements;
+    private long rows;
+    private long jdbcNanos;
+    private final Map<String, Integer> shapeCounts = new HashMap<>();
+
+    private QueryStats(String handler) {
+        this.handler = handler;
+    }
+
+    public static void start(String handler) {
+        CURRENT.set(new QueryStats(handler));
+    }
+
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    public static QueryStats end() {
+        QueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    /**
+     * Counts what the current thread runs towards {@code stats}, taken from the request thread, until
+     * {@link #detach()}; does nothing for null.
+     */
+    public static void attach(QueryStats stats) {
+        if (stats != null)
+            CURRENT.set(stats);
+    }
+
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    public synchronized int getStatements() {
+        return statements;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    // a copy, statements of attached threads may still be counted
+    public synchronized Map<String, Integer> getShapeCounts() {
+        return new HashMap<>(shapeCounts);
+    }
+
+    void statement(String sql, long nanos) {
+        String shape = sql == null ? null : shape(sql);
+        synchronized (this) {
+            statements++;
+            jdbcNanos += nanos;
+            if (shape != null)
+                shapeCounts.merge(shape, 1, Integer::sum);
+        }
+    }
+
+    synchronized void row() {
+        rows++;
+    }
+
+    static String shape(String sql) {
+        String shape = SHAPES.get(sql);
+        if (shape != null)
+            return shape;
+        shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        if (SHAPES.size() < MAX_CACHED_SHAPES)
+            SHAPES.put(sql, shape);
+        return shape;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ratefood.app.query;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Locale;
+
+/**
+ * Echoes the {@link QueryStats} of the request in an {@code X-Query-Stats} header when
+ * {@code ratefood.query-stats.header} is on. Added just before the body is written, when every statement
+ * of the handler has run; endpoints streaming their own response don't get it.
+ */
+@ControllerAdvice
+public class QueryStatsHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String HEADER = "X-Query-Stats";
+
+    @Value("${ratefood.query-stats.header:false}")
+    private boolean enabled;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return enabled;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        QueryStats stats = QueryStats.current();
+        if (stats != null)
+            response.getHeaders().set(HEADER, String.format(Locale.ROOT, "statements=%d; rows=%d; jdbc-ms=%.3f",
+                    stats.getStatements(), stats.getRows(), stats.getJdbcNanos() / 1e6));
+        return body;
+    }
+}
@@ -11,13 +11,18 @@ import org.springframework.data.repository.query.Param;
 import java.util.List;
 import java.util.UUID;
 
-public interface CityRepository extends JpaRepository<City, String> {
+public interface CityRepository extends JpaRepository<City, Long> {
     City findByName(String name);
     List<City> findAllByOrderByIdAsc(); // add this to your repository
     Page<City> findByNameStartingWithIgnoreCase(String prefix, Pageable pageable);
     Page<City> findAll(Pageable pageable);
 
-    @Query("SELECT c FROM City c WHERE LOWER(c.name) LIKE LOWER(CONCAT(:prefix, '%')) OR LOWER(c.name) LIKE LOWER(CONCAT('% ', :prefix, '%'))")
-    Page<City> findByNameWordPrefix(@Param("prefix") String prefix, Pageable pageable);
+    @Query("SELECT c.id AS id, c.name AS name FROM City c WHERE LOWER(TRIM(c.name)) = :key ORDER BY c.id")
+    List<CityRef> findRefsByKey(@Param("key") String key);
+
+    interface CityRef {
+        Long getId();
+        String getName();
+    }
 
 }
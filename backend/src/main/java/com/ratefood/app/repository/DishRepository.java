@@ -1,26 +1,38 @@
 package com.ratefood.app.repository;
 
+import com.ratefood.app.dto.response.DishResponseDTO;
 import com.ratefood.app.entity.Dish;
 import com.ratefood.app.entity.Restaurant;
 import lombok.Data;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 
-public interface DishRepository extends JpaRepository<Dish, Long> {
 
-    @Query("""
-  SELECT d FROM Dish d
+public interface DishRepository extends JpaRepository<Dish, Long>, JpaSpecificationExecutor<Dish> {
+
+    @Query(value = """
+  SELECT new com.ratefood.app.dto.response.DishResponseDTO(d.id, d.name, r.name, d.tags, d.description, d.image)
+  FROM Dish d
   JOIN d.restaurant r
   JOIN r.city c
   WHERE (:name IS NULL OR :name = '' OR LOWER(d.name) LIKE LOWER(CONCAT('%', :name, '%')))
     AND LOWER(c.name) = LOWER(:city)
 
+""", countQuery = """
+  SELECT COUNT(d) FROM Dish d
+  JOIN d.restaurant r
+  JOIN r.city c
+  WHERE (:name IS NULL OR :name = '' OR LOWER(d.name) LIKE LOWER(CONCAT('%', :name, '%')))
+    AND LOWER(c.name) = LOWER(:city)
 """)
-    Page<Dish> getDishes(
+    Page<DishResponseDTO> getDishes(
             @Param("name") String name,
             @Param("city") String city,
             @Param("minRating") Float minRating,
@@ -31,6 +43,87 @@ public interface DishRepository extends JpaRepository<Dish, Long> {
             Pageable pageable
     );
 
+    @Query("""
+  SELECT new com.ratefood.app.dto.response.DishResponseDTO(d.id, d.name, r.name, d.tags, d.description, d.image)
+  FROM Dish d
+  JOIN d.restaurant r
+  WHERE d.id IN :ids
+""")
+    List<DishResponseDTO> findRowsByIdIn(@Param("ids") Collection<Long> ids);
 
-}
+    @Query(value = """
+  SELECT new com.ratefood.app.dto.response.DishResponseDTO(d.id, d.name, r.name, d.tags, d.description, d.image)
+  FROM Dish d
+  JOIN d.restaurant r
+  WHERE d.id IN :ids
+""", countQuery = "SELECT COUNT(d) FROM Dish d WHERE d.id IN :ids")
+    Page<DishResponseDTO> findRowsByIdIn(@Param("ids") Collection<Long> ids, Pageable pageable);
+
+    @Query("""
+  SELECT d.id AS id, d.name AS name, r.id AS restaurantId, c.name AS city FROM Dish d
+  JOIN d.restaurant r
+  JOIN r.city c
+  ORDER BY d.id
+""")
+    List<NameEntry> findAllNames();
 
+    @Query("""
+  SELECT d.id AS id, d.tags AS tags, c.name AS city FROM Dish d
+  JOIN d.restaurant r
+  JOIN r.city c
+""")
+    List<TagEntry> findAllTags();
+
+    @Query("SELECT r.name AS restaurant, r.city.name AS city FROM Dish d JOIN d.restaurant r WHERE d.id = :id")
+    Owner findOwnerById(@Param("id") long id);
+
+    interface Owner {
+        String getRestaurant();
+        String getCity();
+    }
+
+    interface NameEntry {
+        Long getId();
+        String getName();
+        Long getRestaurantId();
+        String getCity();
+    }
+
+    @Query("""
+  SELECT d.id AS id, d.name AS name, r.name AS restaurant, d.tags AS tags, d.description AS description,
+         d.image AS image, d.upvote AS upvote, d.downvote AS downvote, d.rating AS rating, c.name AS city
+  FROM Dish d
+  JOIN d.restaurant r
+  JOIN r.city c
+""")
+    List<RankEntry> findAllRanked();
+
+    // the dishes that count towards their restaurant's rating
+    @Query("SELECT d.id AS id, d.restaurant.id AS restaurantId, d.rating AS rating FROM Dish d WHERE d.upvote + d.downvote > 0")
+    List<RatedDish> findAllRated();
+
+    interface TagEntry {
+        Long getId();
+        List<String> getTags();
+        String getCity();
+    }
+
+    interface RankEntry {
+        Long getId();
+        String getName();
+        String getRestaurant();
+        List<String> getTags();
+        String getDescription();
+        String getImage();
+        int getUpvote();
+        int getDownvote();
+        float getRating();
+        String getCity();
+    }
+
+    interface RatedDish {
+        Long getId();
+        Long getRestaurantId();
+        float getRating();
+    }
+}
@@ -1,5 +1,6 @@
 package com.ratefood.app.repository;
 
+import com.ratefood.app.dto.response.RestaurantResponseDTO;
 import com.ratefood.app.entity.Restaurant;
 
 import org.springframework.data.domain.Page;
@@ -9,17 +10,31 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
 public interface RestaurantRepository extends JpaRepository<Restaurant, Long> , JpaSpecificationExecutor<Restaurant> {
 
     @Query(value = """
-    SELECT r FROM Restaurant r
+    SELECT new com.ratefood.app.dto.response.RestaurantResponseDTO(r.id, r.name, r.cuisine, r.description, r.rating,
+           r.tags, r.image, r.latitude, r.longitude, c.name)
+    FROM Restaurant r
+    JOIN r.city c
+    WHERE (:name IS NULL  OR :name = '' OR LOWER(r.name) LIKE LOWER(CONCAT('%', :name, '%')))
+      AND ( LOWER(c.name) = LOWER(:city) )
+      AND (:minRating IS NULL OR r.rating >= :minRating)
+      AND (:maxRating IS NULL OR r.rating <= :maxRating)
+""", countQuery = """
+    SELECT COUNT(r) FROM Restaurant r
     WHERE (:name IS NULL  OR :name = '' OR LOWER(r.name) LIKE LOWER(CONCAT('%', :name, '%')))
       AND ( LOWER(r.city.name) = LOWER(:city) )
+      AND (:minRating IS NULL OR r.rating >= :minRating)
+      AND (:maxRating IS NULL OR r.rating <= :maxRating)
 """)
-    Page<Restaurant> getRestaurants(
+    Page<RestaurantResponseDTO> getRestaurants(
             @Param("name") String name,
             @Param("city") String city,
             @Param("minRating") Float minRating,
@@ -31,4 +46,89 @@ public interface RestaurantRepository extends JpaRepository<Restaurant, Long> ,
     );
 
     Optional<Restaurant> findByName(String name);
+
+    // keys are trimmed and lower-cased, a null city matches the name in every city
+    @Query("""
+    SELECT r.id AS id, r.name AS name, c.id AS cityId, c.name AS city
+    FROM Restaurant r
+    JOIN r.city c
+    WHERE LOWER(TRIM(r.name)) = :name
+      AND (:city IS NULL OR LOWER(TRIM(c.name)) = :city)
+    ORDER BY r.id
+""")
+    List<RestaurantRef> findRefsByKey(@Param("name") String name, @Param("city") String city);
+
+    @Query("""
+    SELECT r.id FROM Restaurant r
+    WHERE LOWER(r.city.name) = LOWER(:city)
+      AND (:minRating IS NULL OR r.rating >= :minRating)
+      AND (:maxRating IS NULL OR r.rating <= :maxRating)
+""")
+    List<Long> findIdsByCityAndRating(@Param("city") String city, @Param("minRating") Float minRating,
+                                      @Param("maxRating") Float maxRating);
+
+    @Query("SELECT r.city.name FROM Restaurant r WHERE r.id = :id")
+    String findCityNameById(@Param("id") long id);
+
+    @Query("SELECT r.id AS id, r.city.name AS city, r.latitude AS latitude, r.longitude AS longitude FROM Restaurant r")
+    List<Location> findAllLocations();
+
+    @Query("SELECT r.id AS id, r.name AS name, r.city.name AS city FROM Restaurant r ORDER BY r.id")
+    List<NameEntry> findAllNames();
+
+    @Query("SELECT r.id AS id, r.tags AS tags, r.city.name AS city FROM Restaurant r")
+    List<TagEntry> findAllTags();
+
+    @Query("SELECT r.id AS id, r.rating AS rating, r.city.name AS city FROM Restaurant r")
+    List<RatingEntry> findAllRatings();
+
+    @Query("""
+    SELECT new com.ratefood.app.dto.response.RestaurantResponseDTO(r.id, r.name, r.cuisine, r.description, r.rating,
+           r.tags, r.image, r.latitude, r.longitude, c.name)
+    FROM Restaurant r
+    JOIN r.city c
+    WHERE r.id IN :ids
+""")
+    List<RestaurantResponseDTO> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(value = """
+    SELECT new com.ratefood.app.dto.response.RestaurantResponseDTO(r.id, r.name, r.cuisine, r.description, r.rating,
+           r.tags, r.image, r.latitude, r.longitude, c.name)
+    FROM Restaurant r
+    JOIN r.city c
+    WHERE r.id IN :ids
+""", countQuery = "SELECT COUNT(r) FROM Restaurant r WHERE r.id IN :ids")
+    Page<RestaurantResponseDTO> findRowsByIdIn(@Param("ids") Collection<Long> ids, Pageable pageable);
+
+    interface Location {
+        Long getId();
+        String getCity();
+        BigDecimal getLatitude();
+        BigDecimal getLongitude();
+    }
+
+    interface NameEntry {
+        Long getId();
+        String getName();
+        String getCity();
+    }
+
+    interface TagEntry {
+        Long getId();
+        List<String> getTags();
+        String getCity();
+    }
+
+    interface RatingEntry {
+        Long getId();
+        float getRating();
+        String getCity();
+    }
+
+    interface RestaurantRef {
+        Long getId();
+        String getName();
+        Long getCityId();
+        String getCity();
+    }
 }
@@ -0,0 +1,56 @@
+package com.ratefood.app.routing;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Pins a client to the primary for {@code windowMillis} after it writes, so it reads its own votes and
+ * dishes while the replicas catch up. Writes set a cookie that expires with the window and requests
+ * carrying it read from the primary.
+ */
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    private static final String COOKIE = "ratefood-primary";
+
+    private final long windowMillis;
+
+    public ReadYourWritesInterceptor(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        boolean write = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod());
+        if (write) {
+            // max-age has second granularity, the window is rounded up
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(COOKIE, "1")
+                    .path("/api")
+                    .maxAge((windowMillis + 999) / 1000)
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build().toString());
+        }
+        if (write || pinned(request))
+            ReplicaSet.pinToPrimary();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaSet.unpin();
+    }
+
+    private static boolean pinned(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null)
+            for (Cookie cookie : cookies)
+                if (cookie.getName().equals(COOKIE))
+                    return true;
+        return false;
+    }
+}
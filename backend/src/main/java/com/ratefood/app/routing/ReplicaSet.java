@@ -0,0 +1,219 @@
+package com.ratefood.app.routing;
+
+import com.ratefood.app.dto.response.ReplicaStatsDTO;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The primary and its read replicas. Read-only connections come from a healthy replica picked round-robin
+ * or by least latency, and from the primary when the current request is pinned to it or no replica is
+ * left. A replica is ejected when a connection to it fails or its health check fails
+ * {@code ejectAfter} times in a row, and is readmitted by the first health check that passes.
+ */
+@Slf4j
+public class ReplicaSet implements Closeable {
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_LATENCY
+    }
+
+    // set for the requests that have to read their own writes
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    // standby lag, zero while it has replayed everything it received so an idle primary does not look behind
+    private static final String LAG_SQL = """
+            SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END""";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final int ejectAfter;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private final DataSource readOnlyDataSource = new AbstractDataSource() {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return readOnlyConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return readOnlyConnection();
+        }
+    };
+
+    public ReplicaSet(HikariDataSource primary, List<HikariDataSource> replicas, Selection selection,
+                      int ejectAfter, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.selection = selection;
+        this.ejectAfter = ejectAfter;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    private static final class Replica {
+        final HikariDataSource dataSource;
+        final LongAdder reads = new LongAdder();
+        volatile boolean healthy = true;
+        volatile int failures;
+        volatile double latencyMillis;
+        volatile double lagMillis;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        // health check round trip, weighted by the connections in use so one fast replica is not flooded
+        double load() {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return latencyMillis * (1 + (pool == null ? 0 : pool.getActiveConnections()));
+        }
+    }
+
+    public static void pinToPrimary() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        PINNED.remove();
+    }
+
+    public static boolean pinned() {
+        return PINNED.get() != null;
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public DataSource readOnlyDataSource() {
+        return readOnlyDataSource;
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        if (PINNED.get() == null) {
+            for (Replica replica : candidates()) {
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replica.reads.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    eject(replica, e.getMessage());
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    private List<Replica> candidates() {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas)
+            if (replica.healthy)
+                healthy.add(replica);
+        if (healthy.size() < 2)
+            return healthy;
+        if (selection == Selection.LEAST_LATENCY) {
+            healthy.sort(Comparator.comparingDouble(Replica::load));
+        } else {
+            int start = Math.floorMod(next.getAndIncrement(), healthy.size());
+            List<Replica> rotated = new ArrayList<>(healthy.subList(start, healthy.size()));
+            rotated.addAll(healthy.subList(0, start));
+            healthy = rotated;
+        }
+        return healthy;
+    }
+
+    private void eject(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("replica {} ejected: {}", replica.dataSource.getJdbcUrl(), reason);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ratefood.datasource.health-check-interval-ms:2000}")
+    public void check() {
+        for (Replica replica : replicas) {
+            String failure = probe(replica);
+            if (failure == null) {
+                replica.failures = 0;
+                if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("replica {} readmitted", replica.dataSource.getJdbcUrl());
+                }
+            } else if (++replica.failures >= ejectAfter) {
+                eject(replica, failure);
+            }
+        }
+    }
+
+    // null when the replica answered in time and is not too far behind
+    private String probe(Replica replica) {
+        long started = System.nanoTime();
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(1);
+            if (maxLagMillis > 0) {
+                try (ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    replica.lagMillis = rs.getDouble(1);
+                }
+            } else {
+                statement.execute("SELECT 1");
+            }
+            double millis = (System.nanoTime() - started) / 1e6;
+            replica.latencyMillis = replica.latencyMillis == 0 ? millis : 0.8 * replica.latencyMillis + 0.2 * millis;
+            return maxLagMillis > 0 && replica.lagMillis > maxLagMillis
+                    ? String.format("%.0f ms behind the primary", replica.lagMillis) : null;
+        } catch (SQLException e) {
+            return e.getMessage();
+        }
+    }
+
+    public List<ReplicaStatsDTO> stats() {
+        List<ReplicaStatsDTO> stats = new ArrayList<>(replicas.size() + 1);
+        stats.add(ReplicaStatsDTO.builder()
+                .name("primary")
+                .primary(true)
+                .healthy(true)
+                .reads(primaryReads.sum())
+                .build());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            HikariPoolMXBean pool = replica.dataSource.getHikariPoolMXBean();
+            stats.add(ReplicaStatsDTO.builder()
+                    .name("replica-" + (i + 1))
+                    .healthy(replica.healthy)
+                    .reads(replica.reads.sum())
+                    .active(pool == null ? 0 : pool.getActiveConnections())
+                    .latencyMs(replica.latencyMillis)
+                    .lagMs(replica.lagMillis)
+                    .failures(replica.failures)
+                    .build());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+        primary.close();
+    }
+}
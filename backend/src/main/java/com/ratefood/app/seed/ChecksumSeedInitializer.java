@@ -0,0 +1,108 @@
+package com.ratefood.app.seed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The spring.sql.init scripts, skipped while their SHA-256 matches the one recorded in
+ * {@code seed_checksum} by the run that last applied them. The scripts are idempotent, so instances
+ * starting together may both apply a changed seed; only one of them records it.
+ */
+@Slf4j
+public class ChecksumSeedInitializer extends SqlDataSourceScriptDatabaseInitializer {
+
+    // hex digits of the SHA-256 that identify a seed in checksum()
+    private static final int KEY_LENGTH = 16;
+
+    private final List<String> checksums = new ArrayList<>();
+
+    public ChecksumSeedInitializer(DataSource dataSource, SqlInitializationProperties properties) {
+        super(dataSource, properties);
+    }
+
+    /**
+     * Checksum of the seed scripts this instance started with, null when none were configured to run.
+     */
+    public synchronized String checksum() {
+        return checksums.isEmpty() ? null : String.join("-", checksums);
+    }
+
+    @Override
+    protected void runScripts(Scripts scripts) {
+        List<Resource> resources = new ArrayList<>();
+        scripts.forEach(resources::add);
+        String script = resources.stream().map(Resource::getFilename).collect(Collectors.joining(","));
+        String checksum = sha256(resources);
+        synchronized (this) {
+            checksums.add(checksum.substring(0, KEY_LENGTH));
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS seed_checksum (
+                    script VARCHAR(1024) PRIMARY KEY,
+                    checksum VARCHAR(64) NOT NULL,
+                    applied_at TIMESTAMP NOT NULL
+                )""");
+        List<String> applied = jdbcTemplate.queryForList("SELECT checksum FROM seed_checksum WHERE script = ?",
+                String.class, script);
+        if (applied.contains(checksum)) {
+            log.info("seed {} unchanged, skipped", script);
+            return;
+        }
+
+        long started = System.nanoTime();
+        super.runScripts(scripts);
+        int updated = jdbcTemplate.update("UPDATE seed_checksum SET checksum = ?, applied_at = CURRENT_TIMESTAMP WHERE script = ?",
+                checksum, script);
+        if (updated == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO seed_checksum (script, checksum, applied_at) VALUES (?, ?, CURRENT_TIMESTAMP)",
+                        script, checksum);
+            } catch (DuplicateKeyException e) {
+                // recorded by an instance that applied the same seed concurrently
+            }
+        }
+        log.info("seed {} applied in {} ms", script, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * What {@link #checksum()} reports for a seed run as this one group of scripts.
+     */
+    public static String key(List<Resource> scripts) {
+        return sha256(scripts).substring(0, KEY_LENGTH);
+    }
+
+    private static String sha256(List<Resource> resources) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            for (Resource resource : resources) {
+                try (InputStream in = resource.getInputStream()) {
+                    for (int n; (n = in.read(buffer)) > 0; )
+                        digest.update(buffer, 0, n);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,40 +1,59 @@
 package com.ratefood.app.service;
 
+import com.ratefood.app.cache.ResolutionCache;
 import com.ratefood.app.dto.response.PageResponseDTO;
-import com.ratefood.app.entity.City;
-import com.ratefood.app.repository.CityRepository;
-import org.springframework.data.domain.Page;
+import com.ratefood.app.index.CityIndex;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class CityService {
 
-    private final CityRepository cityRepository;
+    private final CityIndex cityIndex;
 
-    public CityService(CityRepository cityRepository) {
-        this.cityRepository = cityRepository;
+    private final ResolutionCache resolutionCache;
+
+    public CityService(CityIndex cityIndex, ResolutionCache resolutionCache) {
+        this.cityIndex = cityIndex;
+        this.resolutionCache = resolutionCache;
     }
 
     public PageResponseDTO<List<String>> getCities(String name, Pageable pageable){
-        Page<City> page;
-        if(name == null || name.isBlank())
-            page = cityRepository.findAll(pageable);
-        else
-            page = cityRepository.findByNameWordPrefix(name, pageable);
-        List<String> cityNames = page.getContent()
-                .stream()
-                .map(City::getName)
-                .collect(Collectors.toList());
+        int offset = (int) pageable.getOffset();
+        int size = pageable.getPageSize();
+        List<String> cityNames;
+        int total;
+        if(name == null || name.isBlank()) {
+            cityNames = cityIndex.all(offset, size);
+            total = cityIndex.size();
+        } else {
+            CityIndex.Matches matches = cityIndex.search(name, offset, size);
+            cityNames = matches.names();
+            total = matches.total();
+        }
 
         PageResponseDTO<List<String>> response = new PageResponseDTO<>();
         response.setData(cityNames);
-        response.setCurrentPage(page.getNumber());
-        response.setTotalPages(page.getTotalPages());
-        response.setTotalElements((int) page.getTotalElements());
+        response.setCurrentPage(pageable.getPageNumber());
+        response.setTotalPages((total + size - 1) / size);
+        response.setTotalElements(total);
         return response;
     }
+
+    // derived from the names alone, so it is the same on every instance and across restarts
+    public String etag() {
+        return "W/\"" + Integer.toHexString(cityIndex.version()) + "\"";
+    }
+
+    public List<String> getCitiesByPincode(int pincode) {
+        return cityIndex.byPincode(pincode);
+    }
+
+    public int reloadCities() {
+        cityIndex.reload();
+        resolutionCache.clear();
+        return cityIndex.size();
+    }
 }
@@ -1,21 +1,44 @@
 package com.ratefood.app.service;
 
+import com.ratefood.app.cache.ListingCache;
+import com.ratefood.app.cache.ResolutionCache;
 import com.ratefood.app.converter.DishConverter;
 import com.ratefood.app.dto.request.DishRequestDTO;
 import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.dto.response.BatchResponseDTO;
 import com.ratefood.app.dto.response.PageResponseDTO;
 import com.ratefood.app.entity.Dish;
 import com.ratefood.app.entity.Restaurant;
+import com.ratefood.app.index.DishRanking;
+import com.ratefood.app.index.GeoIndex;
+import com.ratefood.app.index.IdBitmap;
+import com.ratefood.app.index.IdPages;
+import com.ratefood.app.index.NameIndex;
+import com.ratefood.app.index.TagIndex;
+import com.ratefood.app.index.TrendingDishes;
 import com.ratefood.app.repository.DishRepository;
 import com.ratefood.app.repository.RestaurantRepository;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
 import org.hibernate.annotations.AttributeAccessor;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,14 +53,43 @@ public class DishService {
     @Autowired
     DishConverter dishConverter;
 
+    @Autowired
+    GeoIndex geoIndex;
+
+    @Autowired
+    NameIndex nameIndex;
+
+    @Autowired
+    ListingCache listingCache;
+
+    @Autowired
+    ResolutionCache resolutionCache;
+
+    @Autowired
+    DishRanking dishRanking;
+
+    @Autowired
+    TrendingDishes trendingDishes;
+
+    @Autowired
+    TagIndex tagIndex;
+
+    @Value("${ratefood.batch.max-ids:100}")
+    int maxBatchIds;
+
+    @Value("${ratefood.search.max-in-list:5000}")
+    int maxInList;
+
     public DishResponseDTO createDish(DishRequestDTO dto){
 
-        String restaurantName = dto.getRestaurant();
-        Restaurant restaurant =  restaurantRepository.findByName(restaurantName).orElseThrow(() -> new EntityNotFoundException("Restaurant not found"));
+        ResolutionCache.RestaurantRef restaurant = resolutionCache.restaurant(dto.getCity(), dto.getRestaurant());
+        if (restaurant == null)
+            throw new EntityNotFoundException("Restaurant not found");
 
+        // a reference, the insert only needs the restaurant id
         Dish dishEntity = Dish.builder()
                 .name(dto.getName())
-                .restaurant(restaurant)
+                .restaurant(restaurantRepository.getReferenceById(restaurant.id()))
                 .tags(dto.getTags())
                 .description(dto.getDescription())
                 .build();
@@ -45,10 +97,29 @@ public class DishService {
             dishEntity.setImage(dto.getImage());
 
         Dish dishCreated  = dishRepository.save(dishEntity);
-        DishResponseDTO responseDto = dishConverter.fromDishtoDishResponseDTO(dishCreated);
+        nameIndex.addDish(restaurant.city(), dishCreated.getId(), dishCreated.getName(), restaurant.id());
+        tagIndex.setDishTags(restaurant.city(), dishCreated.getId(), dishCreated.getTags());
+        listingCache.invalidate(restaurant.city());
+        DishResponseDTO responseDto = dishConverter.fromDishtoDishResponseDTO(dishCreated, restaurant.name());
+        dishRanking.add(restaurant.city(), responseDto);
         return responseDto;
     }
 
+    public DishResponseDTO updateTags(long id, List<String> tags) {
+        Dish dish = dishRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Dish not found"));
+        dish.setTags(tags);
+        Dish saved = dishRepository.save(dish);
+        // the restaurant is lazy and the save's transaction is over, its names come from a projection
+        DishRepository.Owner owner = dishRepository.findOwnerById(saved.getId());
+        String city = owner.getCity();
+        tagIndex.setDishTags(city, saved.getId(), saved.getTags());
+        listingCache.invalidate(city);
+        DishResponseDTO responseDto = dishConverter.fromDishtoDishResponseDTO(saved, owner.getRestaurant());
+        dishRanking.updateRow(responseDto);
+        return responseDto;
+    }
+
+    @Transactional(readOnly = true)
     public PageResponseDTO<List<DishResponseDTO>> getDishes(
             String name,
             String city,
@@ -57,16 +128,227 @@ public class DishService {
             Double currentLatitude,
             Double currentLongitude,
             Double maxDistanceKm,
+            List<String> tags,
+            String tagMatch,
+            boolean facets,
+            String after,
             Pageable pageable
     ) {
-        Page<Dish> dishes = dishRepository.getDishes(name, city, minRating, maxRating, currentLatitude,
-                currentLongitude, maxDistanceKm, pageable);
+        TagIndex.Filter tagFilter = TagIndex.Filter.of(tags, "any".equalsIgnoreCase(tagMatch));
+        // nearby pages depend on the caller's position and are left uncached
+        if (currentLatitude != null && currentLongitude != null)
+            return listDishes(name, city, minRating, maxRating, currentLatitude, currentLongitude,
+                    maxDistanceKm, tagFilter, facets, after, pageable);
+        ListingCache.Key key = listingKey(name, city, minRating, maxRating, tagFilter, facets, after, pageable);
+        return listingCache.get(key, () -> listDishes(name, city, minRating, maxRating, null, null,
+                maxDistanceKm, tagFilter, facets, after, pageable));
+    }
+
+    /**
+     * Entity tag of the listing page if it is cached, null otherwise or for pages near the caller.
+     */
+    public String cachedEtag(String name, String city, Float minRating, Float maxRating, Double currentLatitude,
+                             Double currentLongitude, List<String> tags, String tagMatch, boolean facets, String after,
+                             Pageable pageable) {
+        if (currentLatitude != null && currentLongitude != null)
+            return null;
+        TagIndex.Filter tagFilter = TagIndex.Filter.of(tags, "any".equalsIgnoreCase(tagMatch));
+        return listingCache.etag(listingKey(name, city, minRating, maxRating, tagFilter, facets, after, pageable));
+    }
+
+    private static ListingCache.Key listingKey(String name, String city, Float minRating, Float maxRating,
+                                               TagIndex.Filter tagFilter, boolean facets, String after,
+                                               Pageable pageable) {
+        return ListingCache.Key.of("dish", city, name, minRating, maxRating, tagFilter, facets, after, pageable);
+    }
+
+    // served from the in-memory ranking, no query
+    public PageResponseDTO<List<DishResponseDTO>> getTopDishes(String city, Pageable pageable) {
+        Page<DishResponseDTO> dishes = dishRanking.top(city, pageable);
+        PageResponseDTO<List<DishResponseDTO>> dto = new PageResponseDTO<>();
+        dto.setData(dishes.getContent());
+        dto.setTotalPages(dishes.getTotalPages());
+        dto.setTotalElements((int) dishes.getTotalElements());
+        dto.setCurrentPage(dishes.getNumber());
+        return dto;
+    }
 
+    public PageResponseDTO<List<DishResponseDTO>> getTrendingDishes(String city, String window, Pageable pageable) {
+        TrendingDishes.Window trendWindow;
+        try {
+            trendWindow = TrendingDishes.Window.valueOf(window.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "window must be one of hour, day");
+        }
+        Page<DishResponseDTO> dishes = trendingDishes.trending(city, trendWindow, pageable);
         PageResponseDTO<List<DishResponseDTO>> dto = new PageResponseDTO<>();
-        dto.setData(dishes.getContent().stream().map(dish -> dishConverter.fromDishtoDishResponseDTO(dish)).collect(Collectors.toList()));
+        dto.setData(dishes.getContent());
         dto.setTotalPages(dishes.getTotalPages());
         dto.setTotalElements((int) dishes.getTotalElements());
         dto.setCurrentPage(dishes.getNumber());
         return dto;
     }
+
+    public void recordView(long dishId) {
+        trendingDishes.view(dishId);
+    }
+
+    // one IN query for the whole batch, rows in request order
+    @Transactional(readOnly = true)
+    public BatchResponseDTO<DishResponseDTO> getDishBatch(List<Long> requested) {
+        long[] ids = IdPages.distinct(requested);
+        if (ids.length > maxBatchIds)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most " + maxBatchIds + " ids per request");
+        List<DishResponseDTO> rows = ids.length == 0 ? List.of()
+                : IdPages.inOrder(ids, dishRepository.findRowsByIdIn(IdPages.boxed(ids)), DishResponseDTO::getId);
+        return new BatchResponseDTO<>(rows, IdPages.missing(ids, rows, DishResponseDTO::getId));
+    }
+
+    private PageResponseDTO<List<DishResponseDTO>> listDishes(
+            String name,
+            String city,
+            Float minRating,
+            Float maxRating,
+            Double currentLatitude,
+            Double currentLongitude,
+            Double maxDistanceKm,
+            TagIndex.Filter tagFilter,
+            boolean facets,
+            String after,
+            Pageable pageable
+    ) {
+        boolean nearby = currentLatitude != null && currentLongitude != null;
+        IdBitmap tagged = tagFilter == null ? null : tagIndex.dishes(city, tagFilter);
+        // null when neither name, tags nor position restrict the city's dishes, and for a nearby page
+        // without facets, which is found without listing every dish around
+        long[] ids = null;
+        if (!nearby)
+            ids = matchingDishIds(name, city, tagged);
+        else if (facets)
+            ids = nearbyDishIds(name, city, currentLatitude, currentLongitude, maxDistanceKm, tagged);
+
+        PageResponseDTO<List<DishResponseDTO>> dto;
+        // nearby listings are paged from the in-memory index and keep offset pages
+        if (after != null && !nearby) {
+            dto = getDishesAfter(name, city, ids, tagFilter, after, pageable);
+        } else {
+            Page<DishResponseDTO> dishes;
+            if (nearby && ids == null)
+                dishes = nearestDishes(name, city, currentLatitude, currentLongitude, maxDistanceKm, tagged, pageable);
+            else if (nearby)
+                dishes = IdPages.page(ids, pageable, dishRepository::findRowsByIdIn, DishResponseDTO::getId);
+            else if (ids != null)
+                dishes = getDishesByIds(ids, name, city, tagFilter, minRating, maxRating, pageable);
+            else
+                dishes = dishRepository.getDishes(name, city, minRating, maxRating, currentLatitude,
+                        currentLongitude, maxDistanceKm, pageable);
+
+            dto = new PageResponseDTO<>();
+            dto.setData(dishes.getContent());
+            if (nearby && ids == null) {
+                // the page's total only counts the rows read up to one past it
+                dto.setHasNext(dishes.hasNext());
+            } else {
+                dto.setTotalPages(dishes.getTotalPages());
+                dto.setTotalElements((int) dishes.getTotalElements());
+            }
+            dto.setCurrentPage(dishes.getNumber());
+        }
+        if (facets)
+            dto.setFacets(tagIndex.dishFacets(city, ids == null ? null : IdBitmap.of(ids)));
+        return dto;
+    }
+
+    // cursor mode: keyset seek on (sort key, id) without a count query
+    private PageResponseDTO<List<DishResponseDTO>> getDishesAfter(String name, String city, long[] ids,
+                                                                  TagIndex.Filter tagFilter, String after, Pageable pageable) {
+        KeysetCursor cursor = KeysetCursor.decode(after, pageable.getSort());
+        Window<Dish> window = dishRepository.findBy(dishFilter(name, city, ids, tagFilter),
+                query -> query.sortBy(cursor.sort()).limit(pageable.getPageSize()).scroll(cursor.position()));
+
+        PageResponseDTO<List<DishResponseDTO>> dto = new PageResponseDTO<>();
+        dto.setData(window.getContent().stream().map(dish -> dishConverter.fromDishtoDishResponseDTO(dish)).collect(Collectors.toList()));
+        if (window.hasNext() && !window.isEmpty())
+            dto.setNextCursor(cursor.after(window.getContent().get(window.size() - 1)));
+        return dto;
+    }
+
+    private Specification<Dish> dishFilter(String name, String city, long[] ids, TagIndex.Filter tagFilter) {
+        Specification<Dish> inCity = (root, query, cb) -> {
+            // fetched in the same query, the converter needs the restaurant name; a count query only joins
+            From<Dish, Restaurant> restaurant = Long.class == query.getResultType() ? root.join("restaurant")
+                    : (Join<Dish, Restaurant>) root.<Dish, Restaurant>fetch("restaurant");
+            return cb.equal(cb.lower(restaurant.get("city").get("name")), city.toLowerCase(Locale.ROOT));
+        };
+        if (ids == null)
+            return inCity;
+        if (ids.length <= maxInList)
+            return inCity.and((root, query, cb) -> ids.length == 0 ? cb.disjunction() : root.get("id").in(IdPages.boxed(ids)));
+        Specification<Dish> filter = inCity;
+        if (name != null && !name.isEmpty())
+            filter = filter.and((root, query, cb) ->
+                    cb.like(cb.lower(root.get("name")), "%" + name.toLowerCase(Locale.ROOT) + "%"));
+        if (tagFilter != null)
+            filter = filter.and(tagsMatch(tagIndex.dishSpellings(city, tagFilter), tagFilter.any()));
+        return filter;
+    }
+
+    // the tag column holds the spellings as written, each filter tag matches any of its stored spellings
+    private static Specification<Dish> tagsMatch(List<List<String>> spellings, boolean any) {
+        return (root, query, cb) -> {
+            HibernateCriteriaBuilder hcb = (HibernateCriteriaBuilder) cb;
+            Expression<List<String>> tags = root.get("tags");
+            Predicate[] perTag = spellings.stream()
+                    .map(tag -> cb.or(tag.stream().map(spelling -> hcb.collectionContains(tags, spelling)).toArray(Predicate[]::new)))
+                    .toArray(Predicate[]::new);
+            return any ? cb.or(perTag) : cb.and(perTag);
+        };
+    }
+
+    // ascending ids of the city's dishes matching the name and tags, null when neither is given
+    private long[] matchingDishIds(String name, String city, IdBitmap tagged) {
+        if (name != null && !name.isEmpty()) {
+            long[] ids = nameIndex.dishes(city, name);
+            return tagged == null ? ids : tagged.retain(ids);
+        }
+        return tagged == null ? null : tagged.toArray();
+    }
+
+    // nearby dishes are ordered by the distance of their restaurant, the requested sort is ignored
+    private long[] nearbyDishIds(String name, String city, double latitude, double longitude,
+                                 Double maxDistanceKm, IdBitmap tagged) {
+        long[] restaurantIds = geoIndex.nearby(city, latitude, longitude, maxDistanceKm).ids();
+        long[] ids = nameIndex.dishesOfRestaurants(city, restaurantIds, name);
+        return tagged == null ? ids : tagged.retain(ids);
+    }
+
+    // restaurants nearest first until one dish past the page, so the total only tells whether another page follows
+    private Page<DishResponseDTO> nearestDishes(String name, String city, double latitude, double longitude,
+                                                Double maxDistanceKm, IdBitmap tagged, Pageable pageable) {
+        long wanted = pageable.isPaged() ? pageable.getOffset() + pageable.getPageSize() + 1 : Long.MAX_VALUE;
+        List<Long> ids = new ArrayList<>();
+        geoIndex.visitNearest(city, latitude, longitude, maxDistanceKm, (restaurantId, distanceKm) -> {
+            for (long id : nameIndex.dishesOfRestaurants(city, new long[]{restaurantId}, name))
+                if (tagged == null || tagged.contains(id))
+                    ids.add(id);
+            return ids.size() < wanted;
+        });
+        return IdPages.page(ids.stream().mapToLong(Long::longValue).toArray(), pageable,
+                dishRepository::findRowsByIdIn, DishResponseDTO::getId);
+    }
+
+    private Page<DishResponseDTO> getDishesByIds(long[] ids, String name, String city, TagIndex.Filter tagFilter,
+                                                 Float minRating, Float maxRating, Pageable pageable) {
+        if (ids.length == 0)
+            return Page.empty(pageable);
+        if (pageable.getSort().isUnsorted())
+            return IdPages.page(ids, pageable, dishRepository::findRowsByIdIn, DishResponseDTO::getId);
+        if (ids.length <= maxInList)
+            return dishRepository.findRowsByIdIn(IdPages.boxed(ids), pageable);
+        // too many matches to sort in the database by id list, fall back to filtering in SQL
+        if (tagFilter == null)
+            return dishRepository.getDishes(name, city, minRating, maxRating, null, null, null, pageable);
+        return dishRepository.findAll(dishFilter(name, city, ids, tagFilter), pageable)
+                .map(dish -> dishConverter.fromDishtoDishResponseDTO(dish));
+    }
 }
@@ -0,0 +1,134 @@
+package com.ratefood.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.dto.response.RestaurantResponseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams every dish or restaurant of a city as NDJSON, one {@link DishResponseDTO} or
+ * {@link RestaurantResponseDTO} per line. Rows come from a forward-only cursor read {@code fetch-size}
+ * rows at a time and are written as they arrive, nothing is kept per row.
+ */
+@Slf4j
+@Service
+public class ExportService {
+
+    private static final String DISHES_SQL = """
+            SELECT d.id, d.name, r.name AS restaurant, d.tags, d.description, d.image
+            FROM dish d
+            JOIN restaurant r ON r.id = d.restaurant_id
+            JOIN city c ON c.id = r.city_id
+            WHERE LOWER(c.name) = LOWER(?)
+            ORDER BY d.id
+            """;
+
+    private static final String RESTAURANTS_SQL = """
+            SELECT r.id, r.name, r.cuisine, r.description, r.rating, r.tags, r.image, r.latitude, r.longitude,
+                   c.name AS city
+            FROM restaurant r
+            JOIN city c ON c.id = r.city_id
+            WHERE LOWER(c.name) = LOWER(?)
+            ORDER BY r.id
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ratefood.export.fetch-size:1000}")
+    private int fetchSize;
+
+    private final TransactionTemplate readOnly;
+
+    public ExportService(PlatformTransactionManager transactionManager) {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    public long exportDishes(String city, Writer out) {
+        return export(DISHES_SQL, city, out, rs -> new DishResponseDTO(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("restaurant"),
+                tags(rs),
+                rs.getString("description"),
+                rs.getString("image")));
+    }
+
+    public long exportRestaurants(String city, Writer out) {
+        return export(RESTAURANTS_SQL, city, out, rs -> new RestaurantResponseDTO(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("cuisine"),
+                rs.getString("description"),
+                rs.getFloat("rating"),
+                tags(rs),
+                rs.getString("image"),
+                rs.getBigDecimal("latitude"),
+                rs.getBigDecimal("longitude"),
+                rs.getString("city")));
+    }
+
+    private long export(String sql, String city, Writer out, RowMapper mapper) {
+        long[] rows = new long[1];
+        // the Postgres driver only honours the fetch size inside a transaction, otherwise it buffers the result
+        readOnly.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setString(1, city);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            try {
+                out.write(objectMapper.writeValueAsString(mapper.map(rs)));
+                out.write('\n');
+                if (++rows[0] % fetchSize == 0)
+                    out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("exported {} rows of {}", rows[0], city);
+        return rows[0];
+    }
+
+    private static List<String> tags(ResultSet rs) throws SQLException {
+        Array array = rs.getArray("tags");
+        if (array == null)
+            return null;
+        Object[] values = (Object[]) array.getArray();
+        List<String> tags = new ArrayList<>(values.length);
+        for (Object value : values)
+            tags.add((String) value);
+        array.free();
+        return tags;
+    }
+
+    private interface RowMapper {
+        Object map(ResultSet rs) throws SQLException;
+    }
+}
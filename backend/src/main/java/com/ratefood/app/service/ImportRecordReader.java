@@ -0,0 +1,115 @@
+package com.ratefood.app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an import body one record at a time, as NDJSON objects or as CSV rows keyed by the header line.
+ * CSV fields may be quoted, {@code tags} holds ';' separated values, and records cannot span lines.
+ */
+class ImportRecordReader {
+
+    enum Format { NDJSON, CSV }
+
+    record ImportRecord(long line, JsonNode fields, String error) {
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private List<String> header;
+    private long line;
+
+    ImportRecordReader(BufferedReader reader, Format format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The next record, or null at the end of the input. Unparseable lines come back with an error set.
+     */
+    ImportRecord next() {
+        String text;
+        try {
+            do {
+                text = reader.readLine();
+                line++;
+            } while (text != null && text.isBlank());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (text == null)
+            return null;
+        try {
+            if (format == Format.NDJSON)
+                return new ImportRecord(line, objectMapper.readTree(text), null);
+            if (header == null) {
+                header = splitCsv(text);
+                return next();
+            }
+            return new ImportRecord(line, csvRecord(splitCsv(text)), null);
+        } catch (IOException | IllegalArgumentException e) {
+            return new ImportRecord(line, null, "unparseable record: " + e.getMessage());
+        }
+    }
+
+    private ObjectNode csvRecord(List<String> values) {
+        if (values.size() > header.size())
+            throw new IllegalArgumentException("more fields than header columns");
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < values.size(); i++) {
+            String column = header.get(i).trim();
+            String value = values.get(i);
+            if (value.isEmpty())
+                continue;
+            if (column.equals("tags")) {
+                ArrayNode tags = node.putArray("tags");
+                for (String tag : value.split(";"))
+                    if (!tag.isBlank())
+                        tags.add(tag.trim());
+            } else {
+                node.put(column, value);
+            }
+        }
+        return node;
+    }
+
+    static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException("unterminated quote");
+        fields.add(field.toString());
+        return fields;
+    }
+}
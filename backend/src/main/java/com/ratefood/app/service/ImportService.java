@@ -0,0 +1,339 @@
+package com.ratefood.app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratefood.app.cache.ListingCache;
+import com.ratefood.app.cache.ResolutionCache;
+import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.dto.response.ImportProgressDTO;
+import com.ratefood.app.entity.Dish;
+import com.ratefood.app.entity.Restaurant;
+import com.ratefood.app.index.DishRanking;
+import com.ratefood.app.index.GeoIndex;
+import com.ratefood.app.index.NameIndex;
+import com.ratefood.app.index.TagIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Streaming bulk import of restaurants and dishes. Records are parsed one at a time, city and restaurant
+ * names are resolved through maps loaded once per import, and rows are written with JDBC batch inserts
+ * whose ids are drawn from the table's own sequence in one round trip per batch.
+ */
+@Slf4j
+@Service
+public class ImportService {
+
+    private static final String INSERT_RESTAURANT = """
+            INSERT INTO restaurant (id, name, cuisine, description, rating, tags, image, latitude, longitude, city_id)
+            VALUES (?, ?, ?, ?, 0, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_DISH = """
+            INSERT INTO dish (id, name, description, image, tags, upvote, downvote, rating, restaurant_id)
+            VALUES (?, ?, ?, ?, ?, 0, 0, 0, ?)
+            """;
+
+    private static final RestaurantRef AMBIGUOUS = new RestaurantRef(-1, null, null);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private GeoIndex geoIndex;
+
+    @Autowired
+    private NameIndex nameIndex;
+
+    @Autowired
+    private ListingCache listingCache;
+
+    @Autowired
+    private ResolutionCache resolutionCache;
+
+    @Autowired
+    private DishRanking dishRanking;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Value("${ratefood.import.batch-size:500}")
+    private int defaultBatchSize;
+
+    public ImportProgressDTO importRestaurants(BufferedReader in, String contentType, Integer batchSize, Writer out) {
+        Map<String, CityRef> cities = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM city ORDER BY id", rs -> {
+            cities.putIfAbsent(key(rs.getString(2)), new CityRef(rs.getLong(1), rs.getString(2)));
+        });
+        return run(reader(in, contentType), batchSize, out,
+                fields -> parseRestaurant(fields, cities),
+                this::insertRestaurants,
+                row -> {
+                    Restaurant restaurant = row.restaurant();
+                    geoIndex.add(row.city(), restaurant.getId(), restaurant.getLatitude(), restaurant.getLongitude());
+                    nameIndex.addRestaurant(row.city(), restaurant.getId(), restaurant.getName());
+                    tagIndex.setRestaurantTags(row.city(), restaurant.getId(), restaurant.getTags());
+                    resolutionCache.restaurantAdded(new ResolutionCache.RestaurantRef(restaurant.getId(),
+                            restaurant.getName(), row.cityId(), row.city()));
+                }, RestaurantRow::city);
+    }
+
+    public ImportProgressDTO importDishes(BufferedReader in, String contentType, Integer batchSize, Writer out) {
+        // restaurant names are only unique within a city, rows without a city must match a unique name
+        Map<String, RestaurantRef> byCityAndName = new HashMap<>();
+        Map<String, RestaurantRef> byName = new HashMap<>();
+        jdbcTemplate.query("SELECT r.id, r.name, c.name FROM restaurant r JOIN city c ON c.id = r.city_id", rs -> {
+            RestaurantRef ref = new RestaurantRef(rs.getLong(1), rs.getString(2), rs.getString(3));
+            byCityAndName.putIfAbsent(key(rs.getString(3)) + '\n' + key(rs.getString(2)), ref);
+            byName.merge(key(rs.getString(2)), ref, (a, b) -> AMBIGUOUS);
+        });
+        return run(reader(in, contentType), batchSize, out,
+                fields -> parseDish(fields, byCityAndName, byName),
+                this::insertDishes,
+                row -> {
+                    Dish dish = row.dish();
+                    nameIndex.addDish(row.city(), dish.getId(), dish.getName(), row.restaurantId());
+                    tagIndex.setDishTags(row.city(), dish.getId(), dish.getTags());
+                    dishRanking.add(row.city(), new DishResponseDTO(dish.getId(), dish.getName(), row.restaurant(),
+                            dish.getTags(), dish.getDescription(), dish.getImage()));
+                }, DishRow::city);
+    }
+
+    private <T> ImportProgressDTO run(ImportRecordReader reader, Integer batchSize, Writer out,
+                                      Function<JsonNode, T> parser, Consumer<List<T>> inserter, Consumer<T> committed,
+                                      Function<T, String> city) {
+        int size = batchSize == null || batchSize < 1 ? defaultBatchSize : batchSize;
+        List<Long> lines = new ArrayList<>(size);
+        List<T> rows = new ArrayList<>(size);
+        long[] counts = new long[3]; // processed, inserted, failed
+        ImportRecordReader.ImportRecord record;
+        while ((record = reader.next()) != null) {
+            counts[0]++;
+            T row;
+            try {
+                if (record.error() != null)
+                    throw new IllegalArgumentException(record.error());
+                row = parser.apply(record.fields());
+            } catch (IllegalArgumentException e) {
+                counts[2]++;
+                write(out, ImportProgressDTO.builder().event("error").line(record.line()).error(e.getMessage()).build());
+                continue;
+            }
+            lines.add(record.line());
+            rows.add(row);
+            if (rows.size() == size)
+                flush(lines, rows, inserter, committed, city, counts, out);
+        }
+        if (!rows.isEmpty())
+            flush(lines, rows, inserter, committed, city, counts, out);
+        ImportProgressDTO summary = progress("done", counts);
+        write(out, summary);
+        log.info("import finished: {} processed, {} inserted, {} failed", counts[0], counts[1], counts[2]);
+        return summary;
+    }
+
+    private <T> void flush(List<Long> lines, List<T> rows, Consumer<List<T>> inserter, Consumer<T> committed,
+                           Function<T, String> city, long[] counts, Writer out) {
+        // the listings of every city the batch added rows to are dropped once, after the batch
+        Set<String> changed = new HashSet<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> inserter.accept(rows));
+            for (T row : rows) {
+                committed.accept(row);
+                changed.add(city.apply(row));
+            }
+            counts[1] += rows.size();
+        } catch (RuntimeException batchFailure) {
+            // retry the batch row by row so only the offending rows are rejected
+            for (int i = 0; i < rows.size(); i++) {
+                List<T> single = List.of(rows.get(i));
+                try {
+                    transactionTemplate.executeWithoutResult(status -> inserter.accept(single));
+                    committed.accept(single.get(0));
+                    changed.add(city.apply(single.get(0)));
+                    counts[1]++;
+                } catch (RuntimeException e) {
+                    counts[2]++;
+                    write(out, ImportProgressDTO.builder().event("error").line(lines.get(i))
+                            .error(NestedExceptionUtils.getMostSpecificCause(e).getMessage()).build());
+                }
+            }
+        }
+        changed.forEach(listingCache::invalidate);
+        lines.clear();
+        rows.clear();
+        write(out, progress("progress", counts));
+    }
+
+    private RestaurantRow parseRestaurant(JsonNode fields, Map<String, CityRef> cities) {
+        String cityName = required(fields, "city");
+        CityRef city = cities.get(key(cityName));
+        if (city == null)
+            throw new IllegalArgumentException("unknown city " + cityName);
+        Restaurant restaurant = Restaurant.builder()
+                .name(required(fields, "name"))
+                .cuisine(text(fields, "cuisine"))
+                .description(text(fields, "description"))
+                .build();
+        if (fields.hasNonNull("tags"))
+            restaurant.setTags(tags(fields));
+        if (fields.hasNonNull("image"))
+            restaurant.setImage(text(fields, "image"));
+        if (fields.hasNonNull("latitude") && fields.hasNonNull("longitude")) {
+            restaurant.setLatitude(new BigDecimal(text(fields, "latitude")));
+            restaurant.setLongitude(new BigDecimal(text(fields, "longitude")));
+        }
+        return new RestaurantRow(restaurant, city.id(), city.name());
+    }
+
+    private DishRow parseDish(JsonNode fields, Map<String, RestaurantRef> byCityAndName, Map<String, RestaurantRef> byName) {
+        String restaurantName = required(fields, "restaurant");
+        String cityName = text(fields, "city");
+        RestaurantRef restaurant = cityName == null
+                ? byName.get(key(restaurantName))
+                : byCityAndName.get(key(cityName) + '\n' + key(restaurantName));
+        if (restaurant == null)
+            throw new IllegalArgumentException("unknown restaurant " + restaurantName);
+        if (restaurant == AMBIGUOUS)
+            throw new IllegalArgumentException("restaurant " + restaurantName + " exists in several cities, add a city");
+        Dish dish = Dish.builder()
+                .name(required(fields, "name"))
+                .description(text(fields, "description"))
+                .tags(fields.hasNonNull("tags") ? tags(fields) : null)
+                .build();
+        if (fields.hasNonNull("image"))
+            dish.setImage(text(fields, "image"));
+        return new DishRow(dish, restaurant.id(), restaurant.name(), restaurant.city());
+    }
+
+    private void insertRestaurants(List<RestaurantRow> rows) {
+        List<Long> ids = allocateIds("restaurant", rows.size());
+        for (int i = 0; i < rows.size(); i++)
+            rows.get(i).restaurant().setId(ids.get(i));
+        jdbcTemplate.batchUpdate(INSERT_RESTAURANT, rows, rows.size(), (ps, row) -> {
+            Restaurant restaurant = row.restaurant();
+            ps.setLong(1, restaurant.getId());
+            ps.setString(2, restaurant.getName());
+            ps.setString(3, restaurant.getCuisine());
+            ps.setString(4, restaurant.getDescription());
+            setTags(ps, 5, restaurant.getTags());
+            ps.setString(6, restaurant.getImage());
+            ps.setBigDecimal(7, restaurant.getLatitude());
+            ps.setBigDecimal(8, restaurant.getLongitude());
+            ps.setLong(9, row.cityId());
+        });
+    }
+
+    private void insertDishes(List<DishRow> rows) {
+        List<Long> ids = allocateIds("dish", rows.size());
+        for (int i = 0; i < rows.size(); i++)
+            rows.get(i).dish().setId(ids.get(i));
+        jdbcTemplate.batchUpdate(INSERT_DISH, rows, rows.size(), (ps, row) -> {
+            Dish dish = row.dish();
+            ps.setLong(1, dish.getId());
+            ps.setString(2, dish.getName());
+            ps.setString(3, dish.getDescription());
+            ps.setString(4, dish.getImage());
+            setTags(ps, 5, dish.getTags());
+            ps.setLong(6, row.restaurantId());
+        });
+    }
+
+    // one round trip reserves the whole batch from the sequence behind the identity column
+    private List<Long> allocateIds(String table, int count) {
+        return jdbcTemplate.queryForList("SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)",
+                Long.class, table, count);
+    }
+
+    private static void setTags(PreparedStatement ps, int index, List<String> tags) throws SQLException {
+        if (tags == null)
+            ps.setNull(index, Types.ARRAY);
+        else
+            ps.setArray(index, ps.getConnection().createArrayOf("varchar", tags.toArray()));
+    }
+
+    private ImportRecordReader reader(BufferedReader in, String contentType) {
+        ImportRecordReader.Format format = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv")
+                ? ImportRecordReader.Format.CSV
+                : ImportRecordReader.Format.NDJSON;
+        return new ImportRecordReader(in, format, objectMapper);
+    }
+
+    private void write(Writer out, ImportProgressDTO event) {
+        try {
+            out.write(objectMapper.writeValueAsString(event));
+            out.write('\n');
+            if (!"error".equals(event.getEvent()))
+                out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ImportProgressDTO progress(String event, long[] counts) {
+        return ImportProgressDTO.builder().event(event).processed(counts[0]).inserted(counts[1]).failed(counts[2]).build();
+    }
+
+    private static String required(JsonNode fields, String field) {
+        String value = text(fields, field);
+        if (value == null || value.isBlank())
+            throw new IllegalArgumentException(field + " is required");
+        return value;
+    }
+
+    private static String text(JsonNode fields, String field) {
+        JsonNode value = fields.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static List<String> tags(JsonNode fields) {
+        List<String> tags = new ArrayList<>();
+        fields.get("tags").forEach(tag -> tags.add(tag.asText()));
+        return tags;
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record CityRef(long id, String name) {
+    }
+
+    private record RestaurantRef(long id, String name, String city) {
+    }
+
+    private record RestaurantRow(Restaurant restaurant, long cityId, String city) {
+    }
+
+    private record DishRow(Dish dish, long restaurantId, String restaurant, String city) {
+    }
+}
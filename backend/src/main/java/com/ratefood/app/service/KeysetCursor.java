@@ -0,0 +1,75 @@
+package com.ratefood.app.service;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opaque {@code after} token of the cursor listing mode. It carries the ordering and the (sort key, id)
+ * of the last row returned, so the next page is a keyset seek instead of an OFFSET scan.
+ */
+record KeysetCursor(String property, Sort.Direction direction, Long lastId, Object lastValue) {
+
+    private static final Set<String> ORDERINGS = Set.of("id", "name", "rating");
+
+    /**
+     * An empty token starts a cursor listing with the requested sort, otherwise the token's own ordering is used.
+     */
+    static KeysetCursor decode(String token, Sort requested) {
+        if (token == null || token.isEmpty()) {
+            Sort.Order order = requested.isUnsorted() ? Sort.Order.asc("id") : requested.iterator().next();
+            if (!ORDERINGS.contains(order.getProperty()))
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "cursor listings can only be sorted by " + ORDERINGS);
+            return new KeysetCursor(order.getProperty(), order.getDirection(), null, null);
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 4);
+            String property = parts[0];
+            if (!ORDERINGS.contains(property))
+                throw new IllegalArgumentException(property);
+            Object value = switch (property) {
+                case "rating" -> Float.valueOf(parts[3]);
+                case "name" -> parts[3];
+                default -> null;
+            };
+            return new KeysetCursor(property, Sort.Direction.fromString(parts[1]), Long.valueOf(parts[2]), value);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor");
+        }
+    }
+
+    Sort sort() {
+        Sort sort = Sort.by(direction, property);
+        return property.equals("id") ? sort : sort.and(Sort.by(direction, "id"));
+    }
+
+    ScrollPosition position() {
+        if (lastId == null)
+            return ScrollPosition.keyset();
+        Map<String, Object> keys = new LinkedHashMap<>();
+        if (!property.equals("id"))
+            keys.put(property, lastValue);
+        keys.put("id", lastId);
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * Token resuming after {@code row}, the last row of the current page.
+     */
+    String after(Object row) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(row);
+        Object id = wrapper.getPropertyValue("id");
+        Object value = property.equals("id") ? "" : wrapper.getPropertyValue(property);
+        String raw = property + "|" + direction.name() + "|" + id + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
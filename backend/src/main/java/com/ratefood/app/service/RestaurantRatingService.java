@@ -0,0 +1,323 @@
+package com.ratefood.app.service;
+
+import com.ratefood.app.cache.ListingCache;
+import com.ratefood.app.dto.response.RatingCheckDTO;
+import com.ratefood.app.repository.DishRepository;
+import com.ratefood.app.repository.RestaurantRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Restaurant rating as the average rating of its voted dishes. Each vote flush adjusts a running sum and
+ * count per restaurant by the change of the flushed dishes, and the restaurants whose rating moved are
+ * marked dirty. Dirty ratings are recomputed from the dish table in periodic batches, never written from
+ * the running sums, so instances flushing votes of the same restaurant cannot overwrite each other. The
+ * ratings read back, and every {@code ratefood.ratings.refresh-interval-ms} all stored ratings including
+ * those written by other instances, are what listings filter on. {@link #check(boolean)} rebuilds the running sums from
+ * the dish table and reports how far the stored ratings had drifted, optionally repairing them. It runs
+ * at startup without repairing, periodically only where {@code ratefood.ratings.check-enabled} is set,
+ * which should be a single instance, and on demand through the {@code ratings} actuator endpoint.
+ */
+@Slf4j
+@Service
+public class RestaurantRatingService {
+
+    private static final String UPDATE_SQL = """
+            UPDATE restaurant SET rating = COALESCE((SELECT AVG(d.rating) FROM dish d
+                                                     WHERE d.restaurant_id = restaurant.id AND d.upvote + d.downvote > 0), 0)
+            WHERE id = ?""";
+
+    private static final String STORED_SQL = "SELECT id, rating FROM restaurant WHERE id = ANY(?)";
+
+    // ratings are floats, anything closer is the same rating
+    private static final double EPSILON = 1e-4;
+
+    @Autowired
+    private DishRepository dishRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ListingCache listingCache;
+
+    @Value("${ratefood.ratings.batch-size:500}")
+    private int batchSize;
+
+    @Value("${ratefood.ratings.check-enabled:false}")
+    private boolean checkEnabled;
+
+    // guarded by this object's monitor, which vote flushes wait on; the scans and writes run outside it
+    private Map<Long, DishRating> dishes = new HashMap<>();
+    private Map<Long, Aggregate> restaurants = new HashMap<>();
+    private final Set<Long> dirty = new TreeSet<>();
+    // updates made while a check scans the tables, replayed on the rebuilt sums
+    private List<DishUpdate> duringCheck;
+
+    // one flush and one check at a time
+    private final Object flushLock = new Object();
+    private final Object checkLock = new Object();
+
+    /**
+     * New rating of a dish whose votes were flushed; rated once it has any vote.
+     */
+    public record DishUpdate(long id, long restaurantId, String city, float rating, boolean rated) {
+    }
+
+    private record DishRating(long restaurantId, float rating) {
+    }
+
+    private static final class Aggregate {
+        final String city;
+        double sum;
+        int count;
+        // last value read from the restaurant table, by a flush or a refresh
+        float stored;
+
+        Aggregate(String city, float stored) {
+            this.city = city;
+            this.stored = stored;
+        }
+
+        float rating() {
+            return count == 0 ? 0 : (float) (sum / count);
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        RatingCheckDTO check = check(false);
+        log.info("restaurant ratings of {} restaurants loaded, {} drifted", check.getRestaurants(), check.getDrifted());
+    }
+
+    public synchronized void update(Collection<DishUpdate> updates) {
+        if (duringCheck != null)
+            duringCheck.addAll(updates);
+        apply(updates);
+    }
+
+    // dish ratings are absolute, applying an update the rebuilt sums already contain changes nothing
+    private void apply(Collection<DishUpdate> updates) {
+        for (DishUpdate update : updates) {
+            DishRating previous = update.rated()
+                    ? dishes.put(update.id(), new DishRating(update.restaurantId(), update.rating()))
+                    : dishes.remove(update.id());
+            if (previous != null)
+                adjust(previous.restaurantId(), update.city(), -previous.rating(), -1);
+            if (update.rated())
+                adjust(update.restaurantId(), update.city(), update.rating(), 1);
+        }
+    }
+
+    private void adjust(long restaurantId, String city, double rating, int count) {
+        // restaurants added since the last check start unrated
+        Aggregate aggregate = restaurants.computeIfAbsent(restaurantId, id -> new Aggregate(city, 0));
+        aggregate.sum += rating;
+        aggregate.count += count;
+        if (aggregate.count == 0)
+            aggregate.sum = 0;
+        if (Math.abs(aggregate.rating() - aggregate.stored) > EPSILON)
+            dirty.add(restaurantId);
+    }
+
+    /**
+     * Ids among {@code ids} whose stored rating lies within the bounds, in the same order.
+     */
+    public synchronized long[] retain(long[] ids, Float minRating, Float maxRating) {
+        if (minRating == null && maxRating == null)
+            return ids;
+        return Arrays.stream(ids).filter(id -> within(id, minRating, maxRating)).toArray();
+    }
+
+    public synchronized boolean within(long id, Float minRating, Float maxRating) {
+        Aggregate aggregate = restaurants.get(id);
+        float rating = aggregate == null ? 0 : aggregate.stored;
+        return (minRating == null || rating >= minRating) && (maxRating == null || rating <= maxRating);
+    }
+
+    /**
+     * Re-reads the stored ratings, so the rating filters of listings see ratings flushed by other instances
+     * and restaurants created there. Runs under the flush lock, a flush's own read-back is never replaced
+     * by an older value.
+     */
+    @Scheduled(initialDelayString = "${ratefood.ratings.refresh-interval-ms:30000}",
+            fixedDelayString = "${ratefood.ratings.refresh-interval-ms:30000}")
+    public void refresh() {
+        synchronized (flushLock) {
+            List<RestaurantRepository.RatingEntry> rows = restaurantRepository.findAllRatings();
+            Set<String> cities = new HashSet<>();
+            synchronized (this) {
+                for (RestaurantRepository.RatingEntry row : rows) {
+                    Aggregate aggregate = restaurants.get(row.getId());
+                    if (aggregate == null) {
+                        restaurants.put(row.getId(), new Aggregate(row.getCity(), row.getRating()));
+                        cities.add(row.getCity());
+                    } else if (Math.abs(aggregate.stored - row.getRating()) > EPSILON) {
+                        aggregate.stored = row.getRating();
+                        cities.add(aggregate.city);
+                    }
+                }
+            }
+            cities.forEach(listingCache::invalidate);
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${ratefood.ratings.flush-interval-ms:5000}")
+    public void flush() {
+        write();
+    }
+
+    // false when the write failed and the ids stay dirty for the next flush
+    private boolean write() {
+        synchronized (flushLock) {
+            // sorted by id so concurrent flushes from several instances lock rows in the same order
+            List<Long> ids;
+            synchronized (this) {
+                if (dirty.isEmpty())
+                    return true;
+                ids = new ArrayList<>(dirty);
+                dirty.clear();
+            }
+            Map<Long, Float> stored = new HashMap<>();
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, ids, batchSize, (ps, id) -> ps.setLong(1, id));
+                for (int from = 0; from < ids.size(); from += batchSize) {
+                    Object[] chunk = ids.subList(from, Math.min(ids.size(), from + batchSize)).toArray();
+                    jdbcTemplate.query(con -> {
+                        PreparedStatement ps = con.prepareStatement(STORED_SQL);
+                        ps.setArray(1, con.createArrayOf("bigint", chunk));
+                        return ps;
+                    }, rs -> {
+                        stored.put(rs.getLong(1), rs.getFloat(2));
+                    });
+                }
+            } catch (RuntimeException e) {
+                log.error("rating flush of {} restaurants failed, retrying on the next flush", ids.size(), e);
+                synchronized (this) {
+                    dirty.addAll(ids);
+                }
+                return false;
+            }
+            Set<String> cities = new HashSet<>();
+            synchronized (this) {
+                stored.forEach((id, rating) -> {
+                    Aggregate aggregate = restaurants.get(id);
+                    if (aggregate != null) {
+                        aggregate.stored = rating;
+                        cities.add(aggregate.city);
+                    }
+                });
+            }
+            cities.forEach(listingCache::invalidate);
+            return true;
+        }
+    }
+
+    /**
+     * Repairs drifted ratings periodically where {@code ratefood.ratings.check-enabled} is set. Every check
+     * scans the restaurant and dish tables, so one instance is enough.
+     */
+    @Scheduled(initialDelayString = "${ratefood.ratings.check-interval-ms:600000}",
+            fixedDelayString = "${ratefood.ratings.check-interval-ms:600000}")
+    public void scheduledCheck() {
+        if (!checkEnabled)
+            return;
+        RatingCheckDTO check = check(true);
+        if (check.getDrifted() > 0 || check.getMemoryDrifted() > 0)
+            log.warn("restaurant ratings drifted: {} stored (max {}), {} in memory, {} repaired",
+                    check.getDrifted(), check.getMaxDrift(), check.getMemoryDrifted(), check.getRepaired());
+    }
+
+    /**
+     * Rebuilds the running sums from the dish table and compares the stored ratings with them; with
+     * {@code repair} the drifted ones are recomputed. Vote flushes are not held up by the scans.
+     */
+    public RatingCheckDTO check(boolean repair) {
+        synchronized (checkLock) {
+            return scan(repair);
+        }
+    }
+
+    private RatingCheckDTO scan(boolean repair) {
+        synchronized (this) {
+            duringCheck = new ArrayList<>();
+        }
+        Map<Long, Aggregate> rebuilt = new HashMap<>();
+        Map<Long, DishRating> rated = new HashMap<>();
+        try {
+            for (RestaurantRepository.RatingEntry row : restaurantRepository.findAllRatings())
+                rebuilt.put(row.getId(), new Aggregate(row.getCity(), row.getRating()));
+            for (DishRepository.RatedDish row : dishRepository.findAllRated()) {
+                Aggregate aggregate = rebuilt.get(row.getRestaurantId());
+                if (aggregate == null)
+                    continue;
+                rated.put(row.getId(), new DishRating(row.getRestaurantId(), row.getRating()));
+                aggregate.sum += row.getRating();
+                aggregate.count++;
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                duringCheck = null;
+            }
+            throw e;
+        }
+
+        int memoryDrifted = 0;
+        double maxDrift = 0;
+        List<Long> drifted = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Long, Aggregate> entry : rebuilt.entrySet()) {
+                Aggregate aggregate = entry.getValue();
+                Aggregate previous = restaurants.get(entry.getKey());
+                if (previous != null && Math.abs(previous.rating() - aggregate.rating()) > EPSILON)
+                    memoryDrifted++;
+                double drift = Math.abs(aggregate.rating() - aggregate.stored);
+                if (drift > EPSILON) {
+                    drifted.add(entry.getKey());
+                    maxDrift = Math.max(maxDrift, drift);
+                }
+            }
+            drifted.sort(null);
+            dishes = rated;
+            restaurants = rebuilt;
+            if (repair) {
+                dirty.addAll(drifted);
+            } else {
+                // a report only, pending vote changes are still written by the next flush
+                dirty.retainAll(drifted);
+            }
+            apply(duringCheck);
+            duringCheck = null;
+        }
+        int repaired = repair && write() ? drifted.size() : 0;
+        return RatingCheckDTO.builder()
+                .restaurants(rebuilt.size())
+                .drifted(drifted.size())
+                .maxDrift(maxDrift)
+                .memoryDrifted(memoryDrifted)
+                .repaired(repaired)
+                .driftedIds(List.copyOf(drifted.subList(0, Math.min(20, drifted.size()))))
+                .build();
+    }
+}
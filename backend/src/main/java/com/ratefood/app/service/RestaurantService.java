@@ -1,17 +1,43 @@
 package com.ratefood.app.service;
 
+import com.ratefood.app.cache.ListingCache;
+import com.ratefood.app.cache.ResolutionCache;
+import com.ratefood.app.converter.RestaurantConverter;
 import com.ratefood.app.dto.request.RestaurantRequestDTO;
+import com.ratefood.app.dto.response.BatchResponseDTO;
 import com.ratefood.app.dto.response.PageResponseDTO;
+import com.ratefood.app.dto.response.RestaurantResponseDTO;
 import com.ratefood.app.entity.City;
 import com.ratefood.app.entity.Restaurant;
+import com.ratefood.app.index.GeoIndex;
+import com.ratefood.app.index.IdBitmap;
+import com.ratefood.app.index.IdPages;
+import com.ratefood.app.index.NameIndex;
+import com.ratefood.app.index.TagIndex;
 import com.ratefood.app.repository.CityRepository;
 import com.ratefood.app.repository.RestaurantRepository;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.data.domain.Page;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
 
 @Service
 public class RestaurantService {
@@ -22,7 +48,35 @@ public class RestaurantService {
     @Autowired
     private CityRepository cityRepository;
 
-    public PageResponseDTO<List<Restaurant>> getRestaurants(
+    @Autowired
+    private RestaurantConverter restaurantConverter;
+
+    @Autowired
+    private GeoIndex geoIndex;
+
+    @Autowired
+    private NameIndex nameIndex;
+
+    @Autowired
+    private ListingCache listingCache;
+
+    @Autowired
+    private RestaurantRatingService restaurantRatingService;
+
+    @Autowired
+    private ResolutionCache resolutionCache;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Value("${ratefood.batch.max-ids:100}")
+    private int maxBatchIds;
+
+    @Value("${ratefood.search.max-in-list:5000}")
+    private int maxInList;
+
+    @Transactional(readOnly = true)
+    public PageResponseDTO<List<RestaurantResponseDTO>> getRestaurants(
             String name,
             String city,
             Float minRating,
@@ -30,22 +84,124 @@ public class RestaurantService {
             Double currentLatitude,
             Double currentLongitude,
             Double maxDistanceKm,
+            List<String> tags,
+            String tagMatch,
+            boolean facets,
+            String after,
             Pageable pageable
     ){
-        Page<Restaurant> restaurants = restaurantRepository.getRestaurants(name, city, minRating, maxRating, currentLatitude,
-                currentLongitude, maxDistanceKm, pageable);
-
-        PageResponseDTO<List<Restaurant>> dto = new PageResponseDTO<>();
-        dto.setData(restaurants.getContent());
-        dto.setTotalPages(restaurants.getTotalPages());
-        dto.setTotalElements((int) restaurants.getTotalElements());
-        dto.setCurrentPage(restaurants.getNumber());
+        TagIndex.Filter tagFilter = TagIndex.Filter.of(tags, "any".equalsIgnoreCase(tagMatch));
+        // nearby pages depend on the caller's position and are left uncached
+        if (currentLatitude != null && currentLongitude != null)
+            return listRestaurants(name, city, minRating, maxRating, currentLatitude, currentLongitude,
+                    maxDistanceKm, tagFilter, facets, after, pageable);
+        ListingCache.Key key = listingKey(name, city, minRating, maxRating, tagFilter, facets, after, pageable);
+        return listingCache.get(key, () -> listRestaurants(name, city, minRating, maxRating, null, null,
+                maxDistanceKm, tagFilter, facets, after, pageable));
+    }
+
+    /**
+     * Entity tag of the listing page if it is cached, null otherwise or for pages near the caller.
+     */
+    public String cachedEtag(String name, String city, Float minRating, Float maxRating, Double currentLatitude,
+                             Double currentLongitude, List<String> tags, String tagMatch, boolean facets, String after,
+                             Pageable pageable) {
+        if (currentLatitude != null && currentLongitude != null)
+            return null;
+        TagIndex.Filter tagFilter = TagIndex.Filter.of(tags, "any".equalsIgnoreCase(tagMatch));
+        return listingCache.etag(listingKey(name, city, minRating, maxRating, tagFilter, facets, after, pageable));
+    }
+
+    private static ListingCache.Key listingKey(String name, String city, Float minRating, Float maxRating,
+                                               TagIndex.Filter tagFilter, boolean facets, String after,
+                                               Pageable pageable) {
+        return ListingCache.Key.of("restaurant", city, name, minRating, maxRating, tagFilter, facets, after, pageable);
+    }
+
+    // one IN query for the whole batch, rows in request order
+    @Transactional(readOnly = true)
+    public BatchResponseDTO<RestaurantResponseDTO> getRestaurantBatch(List<Long> requested) {
+        long[] ids = IdPages.distinct(requested);
+        if (ids.length > maxBatchIds)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most " + maxBatchIds + " ids per request");
+        List<RestaurantResponseDTO> rows = ids.length == 0 ? List.of()
+                : IdPages.inOrder(ids, restaurantRepository.findRowsByIdIn(IdPages.boxed(ids)), RestaurantResponseDTO::getId);
+        return new BatchResponseDTO<>(rows, IdPages.missing(ids, rows, RestaurantResponseDTO::getId));
+    }
+
+    private PageResponseDTO<List<RestaurantResponseDTO>> listRestaurants(
+            String name,
+            String city,
+            Float minRating,
+            Float maxRating,
+            Double currentLatitude,
+            Double currentLongitude,
+            Double maxDistanceKm,
+            TagIndex.Filter tagFilter,
+            boolean facets,
+            String after,
+            Pageable pageable
+    ){
+        boolean nearby = currentLatitude != null && currentLongitude != null;
+        IdBitmap tagged = tagFilter == null ? null : tagIndex.restaurants(city, tagFilter);
+        // null when neither name, tags nor position restrict the city's restaurants, and for a nearby page
+        // without facets, which is found without listing every restaurant around
+        long[] ids = null;
+        if (!nearby)
+            ids = matchingRestaurantIds(name, city, tagged);
+        else if (facets)
+            ids = nearbyRestaurantIds(name, city, currentLatitude, currentLongitude, maxDistanceKm, tagged);
+        if (ids != null)
+            ids = restaurantRatingService.retain(ids, minRating, maxRating);
+
+        PageResponseDTO<List<RestaurantResponseDTO>> dto;
+        // nearby listings are paged from the in-memory index and keep offset pages
+        if (after != null && !nearby) {
+            dto = getRestaurantsAfter(name, city, ids, tagFilter, minRating, maxRating, after, pageable);
+        } else {
+            Page<RestaurantResponseDTO> restaurants;
+            if (nearby && ids == null)
+                restaurants = nearestRestaurants(name, city, currentLatitude, currentLongitude, maxDistanceKm, tagged,
+                        minRating, maxRating, pageable);
+            else if (nearby)
+                restaurants = IdPages.page(ids, pageable, restaurantRepository::findRowsByIdIn, RestaurantResponseDTO::getId);
+            else if (ids != null)
+                restaurants = getRestaurantsByIds(ids, name, city, tagFilter, minRating, maxRating, pageable);
+            else
+                restaurants = restaurantRepository.getRestaurants(name, city, minRating, maxRating, currentLatitude,
+                        currentLongitude, maxDistanceKm, pageable);
+
+            dto = new PageResponseDTO<>();
+            dto.setData(restaurants.getContent());
+            if (nearby && ids == null) {
+                // the page's total only counts the rows read up to one past it
+                dto.setHasNext(restaurants.hasNext());
+            } else {
+                dto.setTotalPages(restaurants.getTotalPages());
+                dto.setTotalElements((int) restaurants.getTotalElements());
+            }
+            dto.setCurrentPage(restaurants.getNumber());
+        }
+        if (facets)
+            dto.setFacets(tagIndex.restaurantFacets(city, facetScope(ids, city, minRating, maxRating)));
         return dto;
     }
 
-    public Restaurant addRestaurant(RestaurantRequestDTO restaurantDTO){
-        String cityName = restaurantDTO.getCity();
-        City city = cityRepository.findByName(cityName);
+    // the ids the page is drawn from; without any the page filters the ratings in SQL, and so do the facets
+    private IdBitmap facetScope(long[] ids, String city, Float minRating, Float maxRating) {
+        if (ids != null)
+            return IdBitmap.of(ids);
+        if (minRating == null && maxRating == null)
+            return null;
+        return IdBitmap.of(restaurantRepository.findIdsByCityAndRating(city, minRating, maxRating).stream()
+                .mapToLong(Long::longValue).toArray());
+    }
+
+    public RestaurantResponseDTO addRestaurant(RestaurantRequestDTO restaurantDTO){
+        ResolutionCache.CityRef city = resolutionCache.city(restaurantDTO.getCity());
+        if (city == null)
+            throw new EntityNotFoundException("City not found");
+        // a reference, the insert only needs the city id
         Restaurant restaurant = Restaurant.builder()
 //                .id(1)
                 .name(restaurantDTO.getName())
@@ -53,10 +209,139 @@ public class RestaurantService {
                 .description(restaurantDTO.getDescription())
                 .tags(restaurantDTO.getTags())
                 .image(restaurantDTO.getImage())
-                .city(city)
-//                .longitude(restaurantDTO.getLongitude()) TODO: get location from user
-//                .latitude(restaurantDTO.getLatitude())
+                .city(cityRepository.getReferenceById(city.id()))
                 .build();
-        return restaurantRepository.save(restaurant);
+        if(restaurantDTO.getLatitude() != null && restaurantDTO.getLongitude() != null) {
+            restaurant.setLatitude(restaurantDTO.getLatitude());
+            restaurant.setLongitude(restaurantDTO.getLongitude());
+        }
+        Restaurant saved = restaurantRepository.save(restaurant);
+        geoIndex.add(city.name(), saved.getId(), saved.getLatitude(), saved.getLongitude());
+        nameIndex.addRestaurant(city.name(), saved.getId(), saved.getName());
+        tagIndex.setRestaurantTags(city.name(), saved.getId(), saved.getTags());
+        resolutionCache.restaurantAdded(new ResolutionCache.RestaurantRef(saved.getId(), saved.getName(), city.id(), city.name()));
+        listingCache.invalidate(city.name());
+        return restaurantConverter.fromRestauranttoRestaurantResponseDTO(saved, city.name());
+    }
+
+    public RestaurantResponseDTO updateTags(long id, List<String> tags) {
+        Restaurant restaurant = restaurantRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Restaurant not found"));
+        restaurant.setTags(tags);
+        Restaurant saved = restaurantRepository.save(restaurant);
+        // the city is lazy and the save's transaction is over, its name comes from a projection
+        String city = restaurantRepository.findCityNameById(saved.getId());
+        tagIndex.setRestaurantTags(city, saved.getId(), saved.getTags());
+        listingCache.invalidate(city);
+        return restaurantConverter.fromRestauranttoRestaurantResponseDTO(saved, city);
+    }
+
+    // cursor mode: keyset seek on (sort key, id) without a count query
+    private PageResponseDTO<List<RestaurantResponseDTO>> getRestaurantsAfter(String name, String city, long[] ids,
+                                                                             TagIndex.Filter tagFilter, Float minRating,
+                                                                             Float maxRating, String after,
+                                                                             Pageable pageable) {
+        KeysetCursor cursor = KeysetCursor.decode(after, pageable.getSort());
+        Window<Restaurant> window = restaurantRepository.findBy(restaurantFilter(name, city, ids, tagFilter, minRating, maxRating),
+                query -> query.sortBy(cursor.sort()).limit(pageable.getPageSize()).scroll(cursor.position()));
+
+        PageResponseDTO<List<RestaurantResponseDTO>> dto = new PageResponseDTO<>();
+        dto.setData(window.getContent().stream()
+                .map(restaurant -> restaurantConverter.fromRestauranttoRestaurantResponseDTO(restaurant))
+                .collect(Collectors.toList()));
+        if (window.hasNext() && !window.isEmpty())
+            dto.setNextCursor(cursor.after(window.getContent().get(window.size() - 1)));
+        return dto;
+    }
+
+    private Specification<Restaurant> restaurantFilter(String name, String city, long[] ids, TagIndex.Filter tagFilter,
+                                                       Float minRating, Float maxRating) {
+        Specification<Restaurant> inCity = (root, query, cb) -> {
+            // fetched in the same query, the converter needs the city name; a count query only joins
+            From<Restaurant, City> restaurantCity = Long.class == query.getResultType() ? root.join("city")
+                    : (Join<Restaurant, City>) root.<Restaurant, City>fetch("city");
+            return cb.equal(cb.lower(restaurantCity.get("name")), city.toLowerCase(Locale.ROOT));
+        };
+        if (minRating != null)
+            inCity = inCity.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("rating"), minRating));
+        if (maxRating != null)
+            inCity = inCity.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("rating"), maxRating));
+        if (ids == null)
+            return inCity;
+        if (ids.length <= maxInList)
+            return inCity.and((root, query, cb) -> ids.length == 0 ? cb.disjunction() : root.get("id").in(IdPages.boxed(ids)));
+        Specification<Restaurant> filter = inCity;
+        if (name != null && !name.isEmpty())
+            filter = filter.and((root, query, cb) ->
+                    cb.like(cb.lower(root.get("name")), "%" + name.toLowerCase(Locale.ROOT) + "%"));
+        if (tagFilter != null)
+            filter = filter.and(tagsMatch(tagIndex.restaurantSpellings(city, tagFilter), tagFilter.any()));
+        return filter;
+    }
+
+    // the tag column holds the spellings as written, each filter tag matches any of its stored spellings
+    private static Specification<Restaurant> tagsMatch(List<List<String>> spellings, boolean any) {
+        return (root, query, cb) -> {
+            HibernateCriteriaBuilder hcb = (HibernateCriteriaBuilder) cb;
+            Expression<List<String>> tags = root.get("tags");
+            Predicate[] perTag = spellings.stream()
+                    .map(tag -> cb.or(tag.stream().map(spelling -> hcb.collectionContains(tags, spelling)).toArray(Predicate[]::new)))
+                    .toArray(Predicate[]::new);
+            return any ? cb.or(perTag) : cb.and(perTag);
+        };
+    }
+
+    // ascending ids of the city's restaurants matching the name and tags, null when neither is given
+    private long[] matchingRestaurantIds(String name, String city, IdBitmap tagged) {
+        if (name != null && !name.isEmpty()) {
+            long[] ids = nameIndex.restaurants(city, name);
+            return tagged == null ? ids : tagged.retain(ids);
+        }
+        return tagged == null ? null : tagged.toArray();
+    }
+
+    // nearby listings are ordered by distance, the requested sort is ignored
+    private long[] nearbyRestaurantIds(String name, String city, double latitude, double longitude,
+                                       Double maxDistanceKm, IdBitmap tagged) {
+        long[] ids = geoIndex.nearby(city, latitude, longitude, maxDistanceKm).ids();
+        if (name != null && !name.isEmpty()) {
+            long[] matching = nameIndex.restaurants(city, name);
+            ids = Arrays.stream(ids).filter(id -> Arrays.binarySearch(matching, id) >= 0).toArray();
+        }
+        return tagged == null ? ids : tagged.retain(ids);
+    }
+
+    // nearest first until one row past the page, so the total only tells whether another page follows
+    private Page<RestaurantResponseDTO> nearestRestaurants(String name, String city, double latitude, double longitude,
+                                                           Double maxDistanceKm, IdBitmap tagged, Float minRating,
+                                                           Float maxRating, Pageable pageable) {
+        long[] matching = name == null || name.isEmpty() ? null : nameIndex.restaurants(city, name);
+        long wanted = pageable.isPaged() ? pageable.getOffset() + pageable.getPageSize() + 1 : Long.MAX_VALUE;
+        List<Long> ids = new ArrayList<>();
+        geoIndex.visitNearest(city, latitude, longitude, maxDistanceKm, (id, distanceKm) -> {
+            if ((matching == null || Arrays.binarySearch(matching, id) >= 0)
+                    && (tagged == null || tagged.contains(id))
+                    && restaurantRatingService.within(id, minRating, maxRating))
+                ids.add(id);
+            return ids.size() < wanted;
+        });
+        return IdPages.page(ids.stream().mapToLong(Long::longValue).toArray(), pageable,
+                restaurantRepository::findRowsByIdIn, RestaurantResponseDTO::getId);
+    }
+
+    private Page<RestaurantResponseDTO> getRestaurantsByIds(long[] ids, String name, String city,
+                                                            TagIndex.Filter tagFilter, Float minRating,
+                                                            Float maxRating, Pageable pageable) {
+        if (ids.length == 0)
+            return Page.empty(pageable);
+        if (pageable.getSort().isUnsorted())
+            return IdPages.page(ids, pageable, restaurantRepository::findRowsByIdIn, RestaurantResponseDTO::getId);
+        if (ids.length <= maxInList)
+            return restaurantRepository.findRowsByIdIn(IdPages.boxed(ids), pageable);
+        // too many matches to sort in the database by id list, fall back to filtering in SQL
+        if (tagFilter == null)
+            return restaurantRepository.getRestaurants(name, city, minRating, maxRating, null, null, null, pageable);
+        return restaurantRepository.findAll(restaurantFilter(name, city, ids, tagFilter, minRating, maxRating), pageable)
+                .map(restaurant -> restaurantConverter.fromRestauranttoRestaurantResponseDTO(restaurant));
     }
 }
@@ -0,0 +1,254 @@
+package com.ratefood.app.service;
+
+import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.dto.response.RestaurantResponseDTO;
+import com.ratefood.app.dto.response.SearchHitDTO;
+import com.ratefood.app.dto.response.SearchResponseDTO;
+import com.ratefood.app.dto.response.SearchSectionDTO;
+import com.ratefood.app.limit.Permit;
+import com.ratefood.app.query.QueryStats;
+import com.ratefood.app.routing.ReplicaSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * One search box query run as the city, restaurant and dish lookups at once, each on its own virtual
+ * thread, and merged into a single list ranked by how well the names match. Lookups still running when
+ * the deadline expires are cancelled, interrupting their thread, and their sections marked partial; their
+ * statements also run under a {@code ratefood.search.query-timeout-s} query timeout, so the database stops
+ * a query the interrupt did not reach. Every lookup holds the request's limiter {@link Permit} and one of
+ * {@code ratefood.search.max-lookups} slots until it finishes or is cancelled, and its SQL is counted in
+ * the request's {@link QueryStats}. A section that gets no slot before the deadline is marked partial
+ * without running.
+ */
+@Slf4j
+@Service
+public class SearchService {
+
+    // ties between equally good matches go to cities, then restaurants, then dishes
+    private static final List<String> TYPES = List.of("city", "restaurant", "dish");
+
+    @Autowired
+    private CityService cityService;
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private DishService dishService;
+
+    @Value("${ratefood.search.deadline-ms:80}")
+    private long deadlineMillis;
+
+    @Value("${ratefood.search.max-limit:50}")
+    private int maxLimit;
+
+    // lookups running at once across all searches, including the ones that outlived their deadline
+    @Value("${ratefood.search.max-lookups:30}")
+    private int maxLookups;
+
+    // whole seconds, the finest a transaction timeout goes
+    @Value("${ratefood.search.query-timeout-s:1}")
+    private int queryTimeoutSeconds;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private Semaphore lookups;
+    // read-only like the listings, with the query timeout applied to every statement of a lookup
+    private TransactionTemplate lookupTransaction;
+
+    // result is null when the lookup got no slot in time; release gives its slots back, once
+    private record Section(String name, long started, Future<List<SearchHitDTO>> result, Runnable release) {
+    }
+
+    @PostConstruct
+    public void init() {
+        lookups = new Semaphore(maxLookups);
+        lookupTransaction = new TransactionTemplate(transactionManager);
+        lookupTransaction.setReadOnly(true);
+        lookupTransaction.setTimeout(queryTimeoutSeconds);
+    }
+
+    public SearchResponseDTO search(String query, String city, int limit) {
+        if (query == null || query.isBlank())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be blank");
+        if (limit < 1 || limit > maxLimit)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxLimit);
+        String q = query.trim();
+        String needle = q.toLowerCase(Locale.ROOT);
+        Pageable page = PageRequest.of(0, limit);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        List<Section> sections = new ArrayList<>(3);
+        sections.add(fork("city", deadline, () -> cityService.getCities(q, page).getData().stream()
+                .map(name -> hit("city", null, name, name, null, null, needle))
+                .toList()));
+        // restaurants and dishes are listed per city
+        if (city != null && !city.isBlank()) {
+            sections.add(fork("restaurant", deadline, () -> restaurantService.getRestaurants(q, city, null, null, null, null,
+                    null, null, null, false, null, page).getData().stream()
+                    .map(restaurant -> restaurantHit(restaurant, needle))
+                    .toList()));
+            sections.add(fork("dish", deadline, () -> dishService.getDishes(q, city, null, null, null, null,
+                    null, null, null, false, null, page).getData().stream()
+                    .map(dish -> dishHit(dish, city, needle))
+                    .toList()));
+        }
+
+        List<SearchHitDTO> hits = new ArrayList<>();
+        List<SearchSectionDTO> outcomes = new ArrayList<>(sections.size());
+        boolean partial = false;
+        for (Section section : sections) {
+            SearchSectionDTO.SearchSectionDTOBuilder outcome = SearchSectionDTO.builder().name(section.name());
+            if (section.result() == null) {
+                outcomes.add(outcome.partial(true).build());
+                partial = true;
+                continue;
+            }
+            try {
+                List<SearchHitDTO> sectionHits = section.result().get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+                hits.addAll(sectionHits);
+                outcome.hits(sectionHits.size());
+            } catch (TimeoutException e) {
+                cancel(section);
+                outcome.partial(true);
+                partial = true;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ResponseStatusException status)
+                    throw status;
+                log.warn("search section {} for '{}' failed", section.name(), q, e.getCause());
+                outcome.failed(true);
+                partial = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel(section);
+                outcome.partial(true);
+                partial = true;
+            }
+            outcomes.add(outcome.tookMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - section.started())).build());
+        }
+
+        hits.sort(Comparator.comparingDouble(SearchHitDTO::getScore).reversed()
+                .thenComparingInt(hit -> TYPES.indexOf(hit.getType()))
+                .thenComparingInt(hit -> hit.getName() == null ? 0 : hit.getName().length()));
+        return SearchResponseDTO.builder()
+                .query(q)
+                .city(city)
+                .hits(hits)
+                .sections(outcomes)
+                .partial(partial)
+                .build();
+    }
+
+    // lookups read like the request they serve, on the primary when the client has to read its writes, and
+    // count towards its query stats and limiter slot
+    private Section fork(String name, long deadline, Supplier<List<SearchHitDTO>> lookup) {
+        long started = System.nanoTime();
+        try {
+            if (!lookups.tryAcquire(Math.max(0, deadline - started), TimeUnit.NANOSECONDS))
+                return new Section(name, started, null, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Section(name, started, null, null);
+        }
+        boolean pinned = ReplicaSet.pinned();
+        QueryStats stats = QueryStats.current();
+        Permit permit = Permit.current();
+        if (permit != null)
+            permit.hold();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (!released.compareAndSet(false, true))
+                return;
+            lookups.release();
+            if (permit != null)
+                permit.release();
+        };
+        return new Section(name, started, executor.submit(() -> {
+            if (pinned)
+                ReplicaSet.pinToPrimary();
+            QueryStats.attach(stats);
+            try {
+                return lookupTransaction.execute(status -> lookup.get());
+            } finally {
+                QueryStats.detach();
+                ReplicaSet.unpin();
+                release.run();
+            }
+        }), release);
+    }
+
+    // a lookup cancelled before it started never runs its finally, so the slots are given back here
+    private static void cancel(Section section) {
+        section.result().cancel(true);
+        section.release().run();
+    }
+
+    private static SearchHitDTO restaurantHit(RestaurantResponseDTO restaurant, String needle) {
+        return hit("restaurant", restaurant.getId(), restaurant.getName(), restaurant.getCity(), null,
+                restaurant.getImage(), needle);
+    }
+
+    private static SearchHitDTO dishHit(DishResponseDTO dish, String city, String needle) {
+        return hit("dish", dish.getId(), dish.getName(), city, dish.getRestaurant(), dish.getImage(), needle);
+    }
+
+    private static SearchHitDTO hit(String type, Long id, String name, String city, String restaurant, String image,
+                                    String needle) {
+        return SearchHitDTO.builder()
+                .type(type)
+                .id(id)
+                .name(name)
+                .city(city)
+                .restaurant(restaurant)
+                .image(image)
+                .score(score(name, needle))
+                .build();
+    }
+
+    // exact name, then name prefix, then word prefix, then anywhere in the name
+    private static double score(String name, String needle) {
+        if (name == null)
+            return 0;
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.equals(needle))
+            return 1.0;
+        if (lower.startsWith(needle))
+            return 0.8;
+        if (lower.contains(" " + needle))
+            return 0.6;
+        return lower.contains(needle) ? 0.4 : 0.2;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,177 @@
+package com.ratefood.app.service;
+
+import com.ratefood.app.cache.ListingCache;
+import com.ratefood.app.index.DishRanking;
+import com.ratefood.app.index.TrendingDishes;
+import com.ratefood.app.repository.DishRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects dish votes in striped in-memory counters and writes the accumulated deltas to the dish
+ * table in periodic batches, so a burst of votes on one dish costs one row update per flush.
+ */
+@Slf4j
+@Service
+public class VoteService {
+
+    private static final String FLUSH_SQL = """
+            UPDATE dish SET
+                upvote = upvote + ?,
+                downvote = downvote + ?,
+                rating = CASE WHEN upvote + downvote + ? = 0 THEN 0
+                              ELSE 5.0 * (upvote + ?) / (upvote + downvote + ?) END
+            WHERE id = ?
+            """;
+
+    private static final String FLUSHED_SQL = """
+            SELECT d.id, d.upvote, d.downvote, d.rating, c.name, d.restaurant_id FROM dish d
+            JOIN restaurant r ON r.id = d.restaurant_id
+            JOIN city c ON c.id = r.city_id
+            WHERE d.id = ANY (?)
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DishRepository dishRepository;
+
+    @Autowired
+    private ListingCache listingCache;
+
+    @Autowired
+    private DishRanking dishRanking;
+
+    @Autowired
+    private TrendingDishes trendingDishes;
+
+    @Autowired
+    private RestaurantRatingService restaurantRatingService;
+
+    @Value("${ratefood.votes.batch-size:500}")
+    private int batchSize;
+
+    // votes land in the current generation; each flush swaps in a fresh map and fully drains the
+    // generation retired one interval earlier, so counters are never dropped while a voter holds them
+    private volatile Map<Long, VoteCounter> current = new ConcurrentHashMap<>();
+    private Map<Long, VoteCounter> retiring = new ConcurrentHashMap<>();
+
+    public void upvote(long dishId) {
+        requireDish(dishId);
+        current.computeIfAbsent(dishId, id -> new VoteCounter()).up.increment();
+        trendingDishes.vote(dishId);
+    }
+
+    public void downvote(long dishId) {
+        requireDish(dishId);
+        current.computeIfAbsent(dishId, id -> new VoteCounter()).down.increment();
+        trendingDishes.vote(dishId);
+    }
+
+    // a vote for a missing dish would be accepted and then update no row; ranked dishes are known in memory,
+    // only those created on another instance since the last ranking rebuild cost a primary key lookup
+    private void requireDish(long dishId) {
+        if (dishRanking.cityOf(dishId) == null && !dishRepository.existsById(dishId))
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Dish not found");
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${ratefood.votes.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<Long, VoteCounter> previous = retiring;
+        retiring = current;
+        current = new ConcurrentHashMap<>();
+
+        // sorted by id so concurrent flushes from several instances lock rows in the same order
+        Map<Long, long[]> deltas = new TreeMap<>();
+        drain(previous, deltas);
+        drain(retiring, deltas);
+        if (deltas.isEmpty())
+            return;
+
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> rows.add(new Object[]{
+                delta[0], delta[1], delta[0] + delta[1], delta[0], delta[0] + delta[1], id}));
+        try {
+            // all chunks or none, the deltas of a failed flush are requeued whole
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(FLUSH_SQL, rows, batchSize, (ps, row) -> {
+                        for (int i = 0; i < row.length; i++)
+                            ps.setLong(i + 1, (Long) row[i]);
+                    }));
+        } catch (RuntimeException e) {
+            log.error("vote flush of {} dishes failed, retrying on the next flush", deltas.size(), e);
+            deltas.forEach((id, delta) -> {
+                VoteCounter counter = current.computeIfAbsent(id, k -> new VoteCounter());
+                counter.up.add(delta[0]);
+                counter.down.add(delta[1]);
+            });
+            return;
+        }
+        publish(deltas.keySet());
+    }
+
+    // new ratings reorder the rating sorted listings of the dishes' cities, their ranking and move their
+    // restaurants' ratings
+    private void publish(Collection<Long> dishIds) {
+        List<DishRanking.VoteCount> counts = new ArrayList<>(dishIds.size());
+        List<RestaurantRatingService.DishUpdate> ratings = new ArrayList<>(dishIds.size());
+        Set<String> cities = new HashSet<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FLUSHED_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", dishIds.toArray()));
+            return ps;
+        }, rs -> {
+            counts.add(new DishRanking.VoteCount(rs.getLong(1), rs.getInt(2), rs.getInt(3), rs.getFloat(4)));
+            cities.add(rs.getString(5));
+            ratings.add(new RestaurantRatingService.DishUpdate(rs.getLong(1), rs.getLong(6), rs.getString(5),
+                    rs.getFloat(4), rs.getInt(2) + rs.getInt(3) > 0));
+        });
+        dishRanking.updateVotes(counts);
+        restaurantRatingService.update(ratings);
+        cities.forEach(listingCache::invalidate);
+    }
+
+    private static void drain(Map<Long, VoteCounter> counters, Map<Long, long[]> deltas) {
+        counters.forEach((id, counter) -> {
+            // subtract what was read instead of resetting, increments racing with the read stay counted
+            long up = counter.up.sum();
+            long down = counter.down.sum();
+            if (up == 0 && down == 0)
+                return;
+            counter.up.add(-up);
+            counter.down.add(-down);
+            long[] delta = deltas.computeIfAbsent(id, k -> new long[2]);
+            delta[0] += up;
+            delta[1] += down;
+        });
+    }
+
+    private static final class VoteCounter {
+        final LongAdder up = new LongAdder();
+        final LongAdder down = new LongAdder();
+    }
+}
@@ -2525,5 +2525,9 @@ INSERT INTO "city" ("id", "name", "pincode") VALUES
                                                  (2489,	'Chandel',	'{795102,795126,795127,795133,795135}')
                     ON CONFLICT (id) DO NOTHING;
 
+-- the trimmed, lower-cased names write requests refer to restaurants and cities by, see ResolutionCache
+CREATE INDEX IF NOT EXISTS idx_restaurant_name_key ON restaurant ((LOWER(TRIM(name))));
+CREATE INDEX IF NOT EXISTS idx_city_name_key ON city ((LOWER(TRIM(name))));
+
 
 -- 2025-08-15 06:52:20.021621+00
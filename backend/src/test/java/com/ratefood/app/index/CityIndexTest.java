@@ -0,0 +1,110 @@
+package com.ratefood.app.index;
+
+import com.ratefood.app.entity.City;
+import com.ratefood.app.repository.CityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CityIndexTest {
+
+    private final CityRepository cityRepository = mock(CityRepository.class);
+    private final CityIndex index = new CityIndex();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "cityRepository", cityRepository);
+        load(city("New Delhi", 110001, 110002),
+                city("Navi Mumbai", 400703),
+                city("Mumbai", 400001, 400703),
+                city("Delhi Cantonment", 110010, 110002),
+                city("Noida", 201301, 201301),
+                city("Greater Noida", 201310));
+    }
+
+    @Test
+    void nameStartsComeBeforeWordStarts() {
+        assertThat(index.search("noi", 0, 10)).isEqualTo(new CityIndex.Matches(List.of("Noida", "Greater Noida"), 2));
+        assertThat(index.search("del", 0, 10).names()).containsExactly("Delhi Cantonment", "New Delhi");
+        // a city matching both at its start and at a later word is listed once, with the name starts
+        assertThat(index.search("mumbai", 0, 10).names()).containsExactly("Mumbai", "Navi Mumbai");
+    }
+
+    @Test
+    void prefixIsMatchedAtWordStartsOnly() {
+        assertThat(index.search("NEW D", 0, 10).names()).containsExactly("New Delhi");
+        assertThat(index.search("elhi", 0, 10).total()).isZero();
+        assertThat(index.search("zz", 0, 10).names()).isEmpty();
+        // an empty prefix matches every name start
+        assertThat(index.search("", 0, 10).total()).isEqualTo(6);
+    }
+
+    @Test
+    void pagesKeepTheTotal() {
+        assertThat(index.search("n", 0, 2)).isEqualTo(new CityIndex.Matches(List.of("New Delhi", "Navi Mumbai"), 4));
+        assertThat(index.search("n", 2, 2)).isEqualTo(new CityIndex.Matches(List.of("Noida", "Greater Noida"), 4));
+        assertThat(index.search("n", 4, 2)).isEqualTo(new CityIndex.Matches(List.of(), 4));
+    }
+
+    @Test
+    void pincodesFindEveryCityContainingThem() {
+        assertThat(index.byPincode(110001)).containsExactly("New Delhi");
+        assertThat(index.byPincode(110002)).containsExactly("New Delhi", "Delhi Cantonment");
+        assertThat(index.byPincode(400703)).containsExactly("Navi Mumbai", "Mumbai");
+        // listed twice in the city row, returned once
+        assertThat(index.byPincode(201301)).containsExactly("Noida");
+        assertThat(index.byPincode(999999)).isEmpty();
+    }
+
+    @Test
+    void reloadReplacesTheSnapshot() {
+        int version = index.version();
+        assertThat(index.contains("new delhi")).isTrue();
+
+        load(city("Pune", 411001), city("New Delhi", 110003));
+
+        assertThat(index.version()).isNotEqualTo(version);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.all(0, 10)).containsExactly("Pune", "New Delhi");
+        assertThat(index.contains("Mumbai")).isFalse();
+        assertThat(index.byPincode(110001)).isEmpty();
+        assertThat(index.byPincode(110003)).containsExactly("New Delhi");
+        assertThat(index.search("n", 0, 10).names()).containsExactly("New Delhi");
+    }
+
+    @Test
+    void citiesWithoutNameOrPincodesAreIndexed() {
+        City unnamed = new City();
+        City noPincodes = city("Agra");
+        noPincodes.setPincode(null);
+        load(unnamed, noPincodes, city("Ajmer", 0, -1, 305001));
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.search("a", 0, 10).names()).containsExactly("Agra", "Ajmer");
+        assertThat(index.byPincode(0)).isEmpty();
+        assertThat(index.byPincode(305001)).containsExactly("Ajmer");
+    }
+
+    private void load(City... cities) {
+        List<City> list = new ArrayList<>(Arrays.asList(cities));
+        for (int i = 0; i < list.size(); i++)
+            list.get(i).setId(i + 1L);
+        when(cityRepository.findAllByOrderByIdAsc()).thenReturn(list);
+        index.reload();
+    }
+
+    private static City city(String name, Integer... pincodes) {
+        City city = new City();
+        city.setName(name);
+        city.setPincode(Arrays.asList(pincodes));
+        return city;
+    }
+}
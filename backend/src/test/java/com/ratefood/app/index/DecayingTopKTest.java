@@ -0,0 +1,87 @@
+package com.ratefood.app.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DecayingTopKTest {
+
+    private static final long TAU = 60_000;
+
+    @Test
+    void ranksByCountHighestFirst() {
+        DecayingTopK topK = new DecayingTopK(TAU, 10, 256, 4, 0);
+        topK.add(1, 1, 0);
+        topK.add(2, 5, 0);
+        topK.add(3, 3, 0);
+        topK.add(1, 1, 0);
+
+        assertThat(topK.top(0, 0)).containsExactly(2, 3, 1);
+        assertThat(topK.top(0, 2.5)).containsExactly(2, 3);
+    }
+
+    @Test
+    void recentEventsOutweighOldOnes() {
+        DecayingTopK topK = new DecayingTopK(TAU, 10, 256, 4, 0);
+        topK.add(1, 10, 0);
+        // five time constants later ten old events weigh about 0.07 of a new one each
+        topK.add(2, 1, 5 * TAU);
+
+        assertThat(topK.top(5 * TAU, 0)).containsExactly(2, 1);
+        // id 1 was not touched again, its candidate score decays away all the same
+        assertThat(topK.top(5 * TAU, 0.5)).containsExactly(2);
+        assertThat(topK.top(10 * TAU, 0.5)).isEmpty();
+    }
+
+    @Test
+    void keepsOnlyTheKBestCandidates() {
+        DecayingTopK topK = new DecayingTopK(TAU, 2, 256, 4, 0);
+        topK.add(1, 3, 0);
+        topK.add(2, 1, 0);
+        topK.add(3, 2, 0);
+        assertThat(topK.top(0, 0)).containsExactly(1, 3);
+
+        // not enough to displace the weakest candidate
+        topK.add(2, 0.5, 0);
+        assertThat(topK.top(0, 0)).containsExactly(1, 3);
+        topK.add(2, 4, 0);
+        assertThat(topK.top(0, 0)).containsExactly(2, 1);
+    }
+
+    @Test
+    void rescalingKeepsScoresComparable() {
+        DecayingTopK topK = new DecayingTopK(TAU, 10, 256, 4, 0);
+        long now = 0;
+        // long enough for several rescales, the weights would overflow a double without them
+        for (int i = 0; i < 2_000; i++, now += TAU) {
+            topK.add(1, 2, now);
+            topK.add(2, 1, now);
+        }
+        now -= TAU;
+        topK.add(3, 1, now);
+
+        long[] top = topK.top(now, 0);
+        assertThat(top).containsExactly(1, 2, 3);
+        // steady state of one event per time constant is 1 / (1 - 1/e) per unit of count
+        double steady = 1 / (1 - Math.exp(-1));
+        assertThat(topK.top(now, 2 * steady * 0.99)).containsExactly(1);
+        assertThat(topK.top(now, steady * 0.99)).containsExactly(1, 2);
+    }
+
+    @Test
+    void findsHeavyHittersAmongManyDistinctIds() {
+        DecayingTopK topK = new DecayingTopK(TAU, 5, 1024, 4, 0);
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            long now = i;
+            if (i % 20 < 5)
+                topK.add(1_000_000 + i % 20, 1, now);
+            else
+                topK.add(random.nextInt(100_000), 1, now);
+        }
+
+        assertThat(topK.top(20_000, 0)).containsExactlyInAnyOrder(1_000_000, 1_000_001, 1_000_002, 1_000_003, 1_000_004);
+    }
+}
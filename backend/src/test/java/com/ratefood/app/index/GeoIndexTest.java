@@ -0,0 +1,119 @@
+package com.ratefood.app.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeoIndexTest {
+
+    private static final double LATITUDE = 28.6139;
+    private static final double LONGITUDE = 77.2090;
+
+    private record Point(long id, double latitude, double longitude) {
+    }
+
+    @Test
+    void nearbyMatchesABruteForceScan() {
+        GeoIndex index = new GeoIndex();
+        // about 110 km across, a few hundred grid cells
+        List<Point> points = randomPoints(index, "New Delhi", 2_000, 1.0, 1);
+
+        for (Double radius : new Double[]{0.5, 3.0, 20.0, 300.0, null}) {
+            GeoIndex.Nearby nearby = index.nearby("NEW DELHI", LATITUDE, LONGITUDE, radius);
+            assertThat(nearby.ids()).as("radius %s", radius)
+                    .containsExactly(nearest(points, LATITUDE, LONGITUDE, radius == null ? Double.MAX_VALUE : radius));
+            for (int i = 1; i < nearby.size(); i++)
+                assertThat(nearby.distancesKm()[i]).isGreaterThanOrEqualTo(nearby.distancesKm()[i - 1]);
+        }
+    }
+
+    @Test
+    void visitNearestWalksOutwardUntilTheVisitorStops() {
+        GeoIndex index = new GeoIndex();
+        List<Point> points = randomPoints(index, "New Delhi", 2_000, 1.0, 2);
+        // off-center, so the rings reach the edge of the city on one side first
+        double latitude = LATITUDE + 0.4, longitude = LONGITUDE - 0.3;
+        long[] expected = nearest(points, latitude, longitude, Double.MAX_VALUE);
+
+        List<Long> visited = new ArrayList<>();
+        List<Float> distances = new ArrayList<>();
+        index.visitNearest("New Delhi", latitude, longitude, null, (id, distanceKm) -> {
+            visited.add(id);
+            distances.add(distanceKm);
+            return visited.size() < 25;
+        });
+        assertThat(visited).containsExactly(box(expected, 25));
+        assertThat(distances).isSorted();
+
+        List<Long> all = new ArrayList<>();
+        index.visitNearest("New Delhi", latitude, longitude, null, (id, distanceKm) -> all.add(id));
+        assertThat(all).containsExactly(box(expected, expected.length));
+
+        List<Long> within = new ArrayList<>();
+        index.visitNearest("New Delhi", latitude, longitude, 10.0, (id, distanceKm) -> within.add(id));
+        long[] expectedWithin = nearest(points, latitude, longitude, 10.0);
+        assertThat(within).containsExactly(box(expectedWithin, expectedWithin.length));
+    }
+
+    @Test
+    void citiesAreKeptApart() {
+        GeoIndex index = new GeoIndex();
+        add(index, "New Delhi", 1, LATITUDE, LONGITUDE);
+        add(index, "Noida", 2, LATITUDE + 0.001, LONGITUDE);
+        index.add("New Delhi", 3, null, BigDecimal.ONE);
+
+        assertThat(index.nearby("New Delhi", LATITUDE, LONGITUDE, null).ids()).containsExactly(1);
+        assertThat(index.nearby("Noida", LATITUDE, LONGITUDE, null).ids()).containsExactly(2);
+        assertThat(index.nearby("Mumbai", LATITUDE, LONGITUDE, null).size()).isZero();
+        List<Long> visited = new ArrayList<>();
+        index.visitNearest("Mumbai", LATITUDE, LONGITUDE, null, (id, distanceKm) -> visited.add(id));
+        assertThat(visited).isEmpty();
+    }
+
+    @Test
+    void haversineDistance() {
+        // New Delhi to Mumbai, about 1150 km
+        assertThat(GeoIndex.haversineKm(LATITUDE, LONGITUDE, 19.0760, 72.8777)).isBetween(1140.0, 1160.0);
+        assertThat(GeoIndex.haversineKm(0, 179.99, 0, -179.99)).isLessThan(2.3);
+    }
+
+    private static List<Point> randomPoints(GeoIndex index, String city, int count, double spanDegrees, long seed) {
+        Random random = new Random(seed);
+        List<Point> points = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            Point point = new Point(id, LATITUDE + (random.nextDouble() - 0.5) * spanDegrees,
+                    LONGITUDE + (random.nextDouble() - 0.5) * spanDegrees);
+            points.add(point);
+            add(index, city, id, point.latitude(), point.longitude());
+        }
+        return points;
+    }
+
+    private static void add(GeoIndex index, String city, long id, double latitude, double longitude) {
+        index.add(city, id, BigDecimal.valueOf(latitude), BigDecimal.valueOf(longitude));
+    }
+
+    // the index keeps distances as floats, so ties are broken the same way here
+    private static long[] nearest(List<Point> points, double latitude, double longitude, double maxKm) {
+        return points.stream()
+                .filter(p -> GeoIndex.haversineKm(latitude, longitude, p.latitude(), p.longitude()) <= maxKm)
+                .sorted(Comparator.comparingDouble((Point p) ->
+                                (float) GeoIndex.haversineKm(latitude, longitude, p.latitude(), p.longitude()))
+                        .thenComparingLong(Point::id))
+                .mapToLong(Point::id)
+                .toArray();
+    }
+
+    private static Long[] box(long[] ids, int count) {
+        Long[] boxed = new Long[Math.min(count, ids.length)];
+        for (int i = 0; i < boxed.length; i++)
+            boxed[i] = ids[i];
+        return boxed;
+    }
+}
@@ -0,0 +1,149 @@
+package com.ratefood.app.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdBitmapTest {
+
+    private static final long CONTAINER = 1 << 16;
+
+    @Test
+    void addAndRemoveAcrossTheArrayLimit() {
+        IdBitmap bitmap = new IdBitmap();
+        // every other id, so the container passes 4096 values well inside its 65536 range
+        for (long id = 0; id < 2 * 5000; id += 2)
+            bitmap.add(id);
+        assertThat(bitmap.cardinality()).isEqualTo(5000);
+        assertThat(bitmap.contains(8190)).isTrue();
+        assertThat(bitmap.contains(8191)).isFalse();
+
+        bitmap.add(8190);
+        assertThat(bitmap.cardinality()).isEqualTo(5000);
+
+        // back below the limit, the container turns into an array again
+        for (long id = 0; id < 2 * 1000; id += 2)
+            bitmap.remove(id);
+        assertThat(bitmap.cardinality()).isEqualTo(4000);
+        assertThat(bitmap.contains(0)).isFalse();
+        assertThat(bitmap.contains(2000)).isTrue();
+        assertThat(bitmap.toArray()).containsExactly(LongStream.iterate(2000, id -> id < 10000, id -> id + 2).toArray());
+
+        // and into a bitmap once more
+        for (long id = 1; id < 2 * 200; id += 2)
+            bitmap.add(id);
+        assertThat(bitmap.cardinality()).isEqualTo(4200);
+        assertThat(bitmap.contains(399)).isTrue();
+    }
+
+    @Test
+    void removingTheLastIdDropsTheContainer() {
+        IdBitmap bitmap = new IdBitmap();
+        bitmap.add(5);
+        bitmap.add(CONTAINER + 5);
+        bitmap.add(3 * CONTAINER);
+        bitmap.remove(CONTAINER + 5);
+        bitmap.remove(CONTAINER + 6);
+        bitmap.remove(7 * CONTAINER);
+
+        assertThat(bitmap.cardinality()).isEqualTo(2);
+        assertThat(bitmap.toArray()).containsExactly(5, 3 * CONTAINER);
+        bitmap.add(CONTAINER + 1);
+        assertThat(bitmap.toArray()).containsExactly(5, CONTAINER + 1, 3 * CONTAINER);
+    }
+
+    @Test
+    void toArrayIsAscendingAcrossContainers() {
+        long[] ids = {3 * CONTAINER + 7, 42, CONTAINER - 1, CONTAINER, 0, 2 * CONTAINER + 65535, 42};
+        IdBitmap bitmap = IdBitmap.of(ids);
+
+        assertThat(bitmap.toArray()).containsExactly(0, 42, CONTAINER - 1, CONTAINER, 2 * CONTAINER + 65535,
+                3 * CONTAINER + 7);
+    }
+
+    @Test
+    void toArrayIsAscendingInBitmapContainers() {
+        long[] ids = new Random(7).longs(20000, 0, 3 * CONTAINER).toArray();
+        IdBitmap bitmap = IdBitmap.of(ids);
+
+        long[] expected = Arrays.stream(ids).distinct().sorted().toArray();
+        assertThat(bitmap.cardinality()).isEqualTo(expected.length);
+        assertThat(bitmap.toArray()).containsExactly(expected);
+    }
+
+    @Test
+    void andOrAndCardinalityMatchSetOperations() {
+        Random random = new Random(11);
+        // sparse and dense containers on both sides, and containers only one side has
+        long[] a = LongStream.concat(random.longs(3000, 0, CONTAINER),
+                random.longs(30000, CONTAINER, 2 * CONTAINER)).toArray();
+        long[] b = LongStream.concat(random.longs(40000, 0, CONTAINER),
+                LongStream.concat(random.longs(2000, CONTAINER, 2 * CONTAINER),
+                        random.longs(500, 5 * CONTAINER, 6 * CONTAINER))).toArray();
+        IdBitmap left = IdBitmap.of(a);
+        IdBitmap right = IdBitmap.of(b);
+
+        TreeSet<Long> intersection = set(a);
+        intersection.retainAll(set(b));
+        TreeSet<Long> union = set(a);
+        union.addAll(set(b));
+
+        assertThat(left.and(right).toArray()).containsExactly(array(intersection));
+        assertThat(right.and(left).toArray()).containsExactly(array(intersection));
+        assertThat(left.or(right).toArray()).containsExactly(array(union));
+        assertThat(left.andCardinality(right)).isEqualTo(intersection.size());
+        assertThat(right.andCardinality(left)).isEqualTo(intersection.size());
+        // the operands are left as they were
+        assertThat(left.toArray()).containsExactly(array(set(a)));
+        assertThat(right.toArray()).containsExactly(array(set(b)));
+    }
+
+    @Test
+    void orOfTwoArraysPastTheLimitIsABitmap() {
+        long[] evens = LongStream.iterate(0, id -> id < 6000, id -> id + 2).toArray();
+        long[] odds = LongStream.iterate(1, id -> id < 6000, id -> id + 2).toArray();
+
+        IdBitmap union = IdBitmap.of(evens).or(IdBitmap.of(odds));
+
+        assertThat(union.cardinality()).isEqualTo(6000);
+        assertThat(union.toArray()).containsExactly(LongStream.range(0, 6000).toArray());
+        assertThat(union.and(IdBitmap.of(evens)).toArray()).containsExactly(evens);
+    }
+
+    @Test
+    void copyIsIndependent() {
+        IdBitmap bitmap = IdBitmap.of(LongStream.range(0, 5000).toArray());
+        IdBitmap copy = bitmap.copy();
+        copy.remove(10);
+        copy.add(CONTAINER);
+
+        assertThat(bitmap.contains(10)).isTrue();
+        assertThat(bitmap.contains(CONTAINER)).isFalse();
+        assertThat(copy.cardinality()).isEqualTo(5000);
+    }
+
+    @Test
+    void retainKeepsTheGivenOrder() {
+        IdBitmap bitmap = IdBitmap.of(new long[]{1, 5, 9, CONTAINER + 2});
+        long[] ids = {CONTAINER + 2, 4, 9, 1};
+
+        assertThat(bitmap.retain(ids)).containsExactly(CONTAINER + 2, 9, 1);
+        assertThat(bitmap.retain(new long[]{9, 5})).containsExactly(9, 5);
+    }
+
+    private static TreeSet<Long> set(long[] ids) {
+        TreeSet<Long> set = new TreeSet<>();
+        for (long id : ids)
+            set.add(id);
+        return set;
+    }
+
+    private static long[] array(TreeSet<Long> set) {
+        return set.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.ratefood.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImportRecordReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void splitsQuotedFieldsWithCommasAndEscapedQuotes() {
+        assertThat(ImportRecordReader.splitCsv("a,\"b, c\",\"say \"\"hi\"\"\",,\"\""))
+                .containsExactly("a", "b, c", "say \"hi\"", "", "");
+        assertThat(ImportRecordReader.splitCsv("\"\"\"\"")).containsExactly("\"");
+        // a quote may open anywhere in a field, the text around it is kept
+        assertThat(ImportRecordReader.splitCsv("x\"y,z\"w")).containsExactly("xy,zw");
+        assertThat(ImportRecordReader.splitCsv("")).containsExactly("");
+    }
+
+    @Test
+    void rejectsAnUnterminatedQuote() {
+        assertThatThrownBy(() -> ImportRecordReader.splitCsv("a,\"b"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("unterminated quote");
+    }
+
+    @Test
+    void csvRowsAreKeyedByTheHeader() {
+        ImportRecordReader reader = reader(ImportRecordReader.Format.CSV, """
+                name, city ,tags,description
+
+                "Dal, Chawal",New Delhi,veg; spicy ;;,"the ""best"" in town"
+                Momo Point,New Delhi,,
+                """);
+
+        ImportRecordReader.ImportRecord first = reader.next();
+        assertThat(first.line()).isEqualTo(3);
+        assertThat(first.error()).isNull();
+        assertThat(first.fields().get("name").asText()).isEqualTo("Dal, Chawal");
+        assertThat(first.fields().get("city").asText()).isEqualTo("New Delhi");
+        assertThat(first.fields().get("tags")).extracting(tag -> tag.asText()).containsExactly("veg", "spicy");
+        assertThat(first.fields().get("description").asText()).isEqualTo("the \"best\" in town");
+
+        // empty fields are left out, not stored as empty strings
+        ImportRecordReader.ImportRecord second = reader.next();
+        assertThat(second.line()).isEqualTo(4);
+        assertThat(second.fields().has("tags")).isFalse();
+        assertThat(second.fields().has("description")).isFalse();
+
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void badRowsComeBackWithAnErrorAndTheReaderCarriesOn() {
+        ImportRecordReader reader = reader(ImportRecordReader.Format.CSV, """
+                name,city
+                "unterminated,New Delhi
+                a,b,c
+                Momo Point,New Delhi
+                """);
+
+        assertThat(reader.next().error()).isEqualTo("unparseable record: unterminated quote");
+        ImportRecordReader.ImportRecord extra = reader.next();
+        assertThat(extra.line()).isEqualTo(3);
+        assertThat(extra.error()).isEqualTo("unparseable record: more fields than header columns");
+        assertThat(reader.next().fields().get("name").asText()).isEqualTo("Momo Point");
+    }
+
+    @Test
+    void ndjsonLinesAreParsedAsObjects() {
+        ImportRecordReader reader = reader(ImportRecordReader.Format.NDJSON, """
+                {"name":"Momo Point","tags":["veg"]}
+                {"name":
+                """);
+
+        ImportRecordReader.ImportRecord first = reader.next();
+        assertThat(first.line()).isEqualTo(1);
+        assertThat(first.fields().get("tags").get(0).asText()).isEqualTo("veg");
+        ImportRecordReader.ImportRecord broken = reader.next();
+        assertThat(broken.line()).isEqualTo(2);
+        assertThat(broken.fields()).isNull();
+        assertThat(broken.error()).startsWith("unparseable record:");
+        assertThat(reader.next()).isNull();
+    }
+
+    private ImportRecordReader reader(ImportRecordReader.Format format, String body) {
+        return new ImportRecordReader(new BufferedReader(new StringReader(body)), format, objectMapper);
+    }
+}
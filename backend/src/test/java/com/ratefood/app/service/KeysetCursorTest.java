@@ -0,0 +1,88 @@
+package com.ratefood.app.service;
+
+import com.ratefood.app.entity.Restaurant;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class KeysetCursorTest {
+
+    @Test
+    void emptyTokenStartsWithTheRequestedSort() {
+        KeysetCursor first = KeysetCursor.decode("", Sort.by(Sort.Direction.DESC, "rating"));
+
+        assertThat(first.property()).isEqualTo("rating");
+        assertThat(first.direction()).isEqualTo(Sort.Direction.DESC);
+        assertThat(first.lastId()).isNull();
+        assertThat(first.sort()).isEqualTo(Sort.by(Sort.Direction.DESC, "rating").and(Sort.by(Sort.Direction.DESC, "id")));
+        assertThat(((KeysetScrollPosition) first.position()).isInitial()).isTrue();
+
+        KeysetCursor unsorted = KeysetCursor.decode(null, Sort.unsorted());
+        assertThat(unsorted.property()).isEqualTo("id");
+        assertThat(unsorted.sort()).isEqualTo(Sort.by(Sort.Direction.ASC, "id"));
+    }
+
+    @Test
+    void tokenResumesAfterTheLastRow() {
+        KeysetCursor cursor = KeysetCursor.decode("", Sort.by(Sort.Direction.DESC, "rating"));
+        Restaurant last = Restaurant.builder().id(42).name("Resto").rating(3.5f).build();
+
+        KeysetCursor next = KeysetCursor.decode(cursor.after(last), Sort.by("name"));
+
+        // the token's ordering wins over the one requested with it
+        assertThat(next).isEqualTo(new KeysetCursor("rating", Sort.Direction.DESC, 42L, 3.5f));
+        KeysetScrollPosition position = (KeysetScrollPosition) next.position();
+        assertThat(position.getKeys()).containsExactly(entry("rating", 3.5f), entry("id", 42L));
+    }
+
+    @Test
+    void namesKeepTheSeparatorAndNonAsciiCharacters() {
+        KeysetCursor cursor = KeysetCursor.decode("", Sort.by("name"));
+        Restaurant last = Restaurant.builder().id(7).name("Dal | Chawal – ढाबा").build();
+
+        String token = cursor.after(last);
+
+        assertThat(token).doesNotContain("=", "+", "/");
+        assertThat(KeysetCursor.decode(token, Sort.unsorted()))
+                .isEqualTo(new KeysetCursor("name", Sort.Direction.ASC, 7L, "Dal | Chawal – ढाबा"));
+    }
+
+    @Test
+    void idOrderCarriesNoSortKey() {
+        KeysetCursor cursor = KeysetCursor.decode("", Sort.by(Sort.Direction.DESC, "id"));
+
+        KeysetCursor next = KeysetCursor.decode(cursor.after(Restaurant.builder().id(9).build()), Sort.unsorted());
+
+        assertThat(next).isEqualTo(new KeysetCursor("id", Sort.Direction.DESC, 9L, null));
+        assertThat(((KeysetScrollPosition) next.position()).getKeys()).containsOnlyKeys("id");
+    }
+
+    @Test
+    void rejectsUnsupportedSortsAndMalformedTokens() {
+        assertBadRequest(() -> KeysetCursor.decode("", Sort.by("cuisine")));
+        assertBadRequest(() -> KeysetCursor.decode("not base64!", Sort.unsorted()));
+        assertBadRequest(() -> KeysetCursor.decode(token("cuisine|ASC|1|x"), Sort.unsorted()));
+        assertBadRequest(() -> KeysetCursor.decode(token("rating|DESC|1"), Sort.unsorted()));
+        assertBadRequest(() -> KeysetCursor.decode(token("rating|DESC|one|3.5"), Sort.unsorted()));
+        assertBadRequest(() -> KeysetCursor.decode(token("rating|SIDEWAYS|1|3.5"), Sort.unsorted()));
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertBadRequest(Runnable decode) {
+        assertThatThrownBy(decode::run)
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+}
@@ -0,0 +1,107 @@
+package com.ratefood.app.service;
+
+import com.ratefood.app.cache.ListingCache;
+import com.ratefood.app.index.DishRanking;
+import com.ratefood.app.index.TrendingDishes;
+import com.ratefood.app.repository.DishRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VoteServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final DishRanking dishRanking = mock(DishRanking.class);
+    private final RestaurantRatingService restaurantRatingService = mock(RestaurantRatingService.class);
+    private final VoteService votes = new VoteService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(votes, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(votes, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(votes, "dishRepository", mock(DishRepository.class));
+        ReflectionTestUtils.setField(votes, "listingCache", mock(ListingCache.class));
+        ReflectionTestUtils.setField(votes, "dishRanking", dishRanking);
+        ReflectionTestUtils.setField(votes, "trendingDishes", mock(TrendingDishes.class));
+        ReflectionTestUtils.setField(votes, "restaurantRatingService", restaurantRatingService);
+        ReflectionTestUtils.setField(votes, "batchSize", 2);
+        when(dishRanking.cityOf(anyLong())).thenReturn("New Delhi");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedFlushIsRolledBackAndRetriedOnce() {
+        votes.upvote(1);
+        votes.upvote(1);
+        votes.downvote(1);
+        votes.upvote(2);
+        votes.downvote(3);
+        List<List<Object[]>> attempts = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    attempts.add(List.copyOf((Collection<Object[]>) invocation.getArgument(1)));
+                    if (attempts.size() == 1)
+                        throw new DataAccessResourceFailureException("connection reset");
+                    return new int[0][];
+                });
+
+        votes.flush();
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(restaurantRatingService, never()).update(any());
+
+        votes.flush();
+        verify(transactionManager).commit(any());
+        assertThat(attempts).hasSize(2);
+        // the retry carries each delta once, in id order: up, down, up + down, up, up + down, id
+        assertThat(attempts.get(1)).containsExactly(
+                new Object[]{2L, 1L, 3L, 2L, 3L, 1L},
+                new Object[]{1L, 0L, 1L, 1L, 1L, 2L},
+                new Object[]{0L, 1L, 1L, 0L, 1L, 3L});
+        assertThat(attempts.get(1)).usingRecursiveFieldByFieldElementComparator().isEqualTo(attempts.get(0));
+
+        // nothing left over for a third flush
+        votes.flush();
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void votesDuringAFailedFlushAddUp() {
+        votes.upvote(5);
+        ArgumentCaptor<Collection<Object[]>> rows = ArgumentCaptor.captor();
+        when(jdbcTemplate.batchUpdate(anyString(), rows.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection reset"))
+                .thenReturn(new int[0][]);
+
+        votes.flush();
+        votes.upvote(5);
+        votes.downvote(5);
+        votes.flush();
+
+        assertThat(rows.getAllValues().get(1)).containsExactly(new Object[]{2L, 1L, 3L, 2L, 3L, 5L});
+    }
+}
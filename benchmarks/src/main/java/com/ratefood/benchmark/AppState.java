@@ -0,0 +1,72 @@
+package com.ratefood.benchmark;
+
+import com.ratefood.app.index.CityIndex;
+import com.ratefood.app.index.DishRanking;
+import com.ratefood.app.index.GeoIndex;
+import com.ratefood.app.index.NameIndex;
+import com.ratefood.app.index.TagIndex;
+import com.ratefood.app.rateFood;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The backend's Spring context on an embedded in-memory H2 database filled with {@link SyntheticData}.
+ * The listing cache is off so every call reaches the database.
+ */
+@State(Scope.Benchmark)
+public class AppState {
+
+    @Param("20")
+    public int cities;
+
+    @Param("200")
+    public int restaurantsPerCity;
+
+    @Param("20")
+    public int dishesPerRestaurant;
+
+    public ConfigurableApplicationContext context;
+    public SyntheticData data;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(rateFood.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.open-in-view=false",
+                        "spring.sql.init.mode=never",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn",
+                        "ratefood.cache.listing.max-rows=0")
+                .run();
+        data = new SyntheticData(cities, restaurantsPerCity, dishesPerRestaurant, 42);
+        data.insert(context.getBean(JdbcTemplate.class));
+        context.getBean(CityIndex.class).reload();
+        context.getBean(GeoIndex.class).load();
+        context.getBean(NameIndex.class).load();
+        context.getBean(TagIndex.class).load();
+        context.getBean(DishRanking.class).load();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ratefood.benchmark;
+
+import com.ratefood.app.dto.response.PageResponseDTO;
+import com.ratefood.app.service.CityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * City listing and autocomplete as served by {@link CityService#getCities(String, Pageable)}.
+ * Run with a larger {@code -p cities=...} to see how the lookups scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CityServiceBenchmark {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 10);
+
+    private CityService cityService;
+    private int pincode;
+
+    @Setup
+    public void setUp(AppState app) {
+        cityService = app.bean(CityService.class);
+        pincode = 110000 + app.cities / 2;
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<String>> allCities() {
+        return cityService.getCities(null, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<String>> prefixSearch() {
+        return cityService.getCities("ka", FIRST_PAGE);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<String>> wordPrefixSearch() {
+        return cityService.getCities("nor", FIRST_PAGE);
+    }
+
+    @Benchmark
+    public List<String> byPincode() {
+        return cityService.getCitiesByPincode(pincode);
+    }
+}
@@ -0,0 +1,51 @@
+package com.ratefood.benchmark;
+
+import com.ratefood.app.converter.DishConverter;
+import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.entity.Dish;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to response mapping of one listing page worth of dishes, no database involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DishConverterBenchmark {
+
+    @Param({"20", "1000"})
+    public int pageSize;
+
+    private final DishConverter dishConverter = new DishConverter();
+    private List<Dish> dishes;
+
+    @Setup
+    public void setUp() {
+        dishes = new SyntheticData(1, Math.max(1, pageSize / 10), 10, 42).dishEntities(pageSize);
+    }
+
+    @Benchmark
+    public List<DishResponseDTO> convertPage() {
+        List<DishResponseDTO> page = new ArrayList<>(dishes.size());
+        for (Dish dish : dishes)
+            page.add(dishConverter.fromDishtoDishResponseDTO(dish));
+        return page;
+    }
+}
@@ -0,0 +1,88 @@
+package com.ratefood.benchmark;
+
+import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.dto.response.PageResponseDTO;
+import com.ratefood.app.dto.response.RestaurantResponseDTO;
+import com.ratefood.app.service.DishService;
+import com.ratefood.app.service.RestaurantService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full listing path of {@link DishService#getDishes} and {@link RestaurantService#getRestaurants}: queries
+ * against the embedded database, row mapping and {@link PageResponseDTO} assembly, for one city.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+    private static final List<String> TAGS = List.of("veg", "spicy");
+    private static final Pageable BY_RATING = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "rating"));
+
+    private DishService dishService;
+    private RestaurantService restaurantService;
+    private String city;
+    private Pageable deepPage;
+
+    @Setup
+    public void setUp(AppState app) {
+        dishService = app.bean(DishService.class);
+        restaurantService = app.bean(RestaurantService.class);
+        city = app.data.cityName(0);
+        deepPage = PageRequest.of((app.restaurantsPerCity * app.dishesPerRestaurant / 20) / 2, 20);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<DishResponseDTO>> dishesFirstPage() {
+        return dishService.getDishes(null, city, null, null, null, null, null, null, "all", false, null, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<DishResponseDTO>> dishesMiddlePage() {
+        return dishService.getDishes(null, city, null, null, null, null, null, null, "all", false, null, deepPage);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<DishResponseDTO>> dishesCursorByRating() {
+        return dishService.getDishes(null, city, null, null, null, null, null, null, "all", false, "", BY_RATING);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<DishResponseDTO>> dishesByName() {
+        return dishService.getDishes("paneer", city, null, null, null, null, null, null, "all", false, null, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<DishResponseDTO>> dishesByTagsWithFacets() {
+        return dishService.getDishes(null, city, null, null, null, null, null, TAGS, "all", true, null, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<RestaurantResponseDTO>> restaurantsFirstPage() {
+        return restaurantService.getRestaurants(null, city, null, null, null, null, null, null, "all", false, null, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public PageResponseDTO<List<RestaurantResponseDTO>> restaurantsByName() {
+        return restaurantService.getRestaurants("spice", city, null, null, null, null, null, null, "all", false, null, FIRST_PAGE);
+    }
+}
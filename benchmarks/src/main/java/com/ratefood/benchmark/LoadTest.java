@@ -0,0 +1,412 @@
+package com.ratefood.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratefood.app.index.CityIndex;
+import com.ratefood.app.index.DishRanking;
+import com.ratefood.app.index.GeoIndex;
+import com.ratefood.app.index.NameIndex;
+import com.ratefood.app.index.TagIndex;
+import com.ratefood.app.rateFood;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Closed-loop load test of the listing, search and write endpoints. It generates a {@link SyntheticData}
+ * dataset over the seeded cities and loads it, either into an embedded copy of the backend on H2 or,
+ * through the bulk import endpoints, into a running backend on Postgres. Then {@code concurrency} virtual
+ * threads each send one request at a time for {@code duration} seconds, and the latency of every request
+ * after the warmup is recorded in an HdrHistogram per operation.
+ * <p>
+ * Arguments are {@code key=value} pairs, see {@link #DEFAULTS}. Being closed-loop, a slow server also
+ * slows the request rate, so the percentiles describe the load the server sustained rather than a fixed
+ * arrival rate.
+ */
+public class LoadTest {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("target", "embedded");     // or the base url of a running backend, e.g. http://localhost:8081
+        DEFAULTS.put("schema", "../backend/src/main/resources/schema.sql"); // seeded cities, embedded target only
+        DEFAULTS.put("load", "true");           // false reuses data loaded by an earlier run
+        DEFAULTS.put("restaurantsPerCity", "20");
+        DEFAULTS.put("dishesPerRestaurant", "10");
+        DEFAULTS.put("skew", "1.0");            // Zipf exponent of city sizes and of city traffic
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("concurrency", "32");
+        DEFAULTS.put("warmup", "10");           // seconds
+        DEFAULTS.put("duration", "60");         // seconds
+        DEFAULTS.put("mix", "read:80,search:15,write:5");
+        DEFAULTS.put("histograms", "");         // directory for .hgrm percentile files
+    }
+
+    enum Operation {
+        DISH_LISTING("read"), RESTAURANT_LISTING("read"), CITY_LISTING("read"),
+        DISH_SEARCH("search"), RESTAURANT_SEARCH("search"), CITY_SEARCH("search"),
+        CREATE_DISH("write");
+
+        final String kind;
+
+        Operation(String kind) {
+            this.kind = kind;
+        }
+    }
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, String> args;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private String baseUrl;
+    private ConfigurableApplicationContext embedded;
+    private List<String> cities;
+    private double[] cityTraffic;
+    private List<List<String>> restaurantsByCity;
+    private List<String> uniqueRestaurants;
+    private Operation[] mix;
+
+    LoadTest(Map<String, String> args) {
+        this.args = args;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : argv) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2 || !DEFAULTS.containsKey(pair[0])) {
+                System.err.println("usage: LoadTest [key=value ...], keys and defaults: " + DEFAULTS);
+                System.exit(2);
+            }
+            args.put(pair[0], pair[1]);
+        }
+        LoadTest test = new LoadTest(args);
+        try {
+            test.prepare();
+            test.run();
+            test.report(System.out);
+        } finally {
+            test.close();
+        }
+        System.exit(0);
+    }
+
+    void prepare() throws Exception {
+        mix = parseMix(args.get("mix"));
+        List<SyntheticData.CitySeed> seeds;
+        SyntheticData data;
+        if (args.get("target").equals("embedded")) {
+            seeds = SeedCities.read(Path.of(args.get("schema")));
+            data = dataset(seeds);
+            startEmbedded(data);
+        } else {
+            baseUrl = args.get("target").replaceAll("/+$", "");
+            seeds = remoteCities();
+            data = dataset(seeds);
+            if (Boolean.parseBoolean(args.get("load")))
+                importRemote(data);
+        }
+        rememberRestaurants(data);
+        cities = seeds.stream().map(SyntheticData.CitySeed::name).toList();
+        cityTraffic = cumulative(SyntheticData.zipfWeights(cities.size(), Double.parseDouble(args.get("skew"))));
+    }
+
+    private SyntheticData dataset(List<SyntheticData.CitySeed> seeds) {
+        return new SyntheticData(seeds, Integer.parseInt(args.get("restaurantsPerCity")),
+                Integer.parseInt(args.get("dishesPerRestaurant")), Double.parseDouble(args.get("skew")),
+                Long.parseLong(args.get("seed")));
+    }
+
+    private void startEmbedded(SyntheticData data) {
+        long started = System.nanoTime();
+        embedded = new SpringApplicationBuilder(rateFood.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.sql.init.mode=never",
+                        "spring.threads.virtual.enabled=true",
+                        "ratefood.limiter.enabled=true",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn")
+                .run();
+        data.insert(embedded.getBean(JdbcTemplate.class));
+        // restart the identity columns after the explicit ids so the write requests can insert
+        JdbcTemplate jdbcTemplate = embedded.getBean(JdbcTemplate.class);
+        jdbcTemplate.execute("ALTER TABLE restaurant ALTER COLUMN id RESTART WITH " + (data.restaurants() + 1));
+        jdbcTemplate.execute("ALTER TABLE dish ALTER COLUMN id RESTART WITH " + (data.dishes() + 1));
+        embedded.getBean(CityIndex.class).reload();
+        embedded.getBean(GeoIndex.class).load();
+        embedded.getBean(NameIndex.class).load();
+        embedded.getBean(TagIndex.class).load();
+        embedded.getBean(DishRanking.class).load();
+        baseUrl = "http://localhost:" + embedded.getEnvironment().getProperty("local.server.port");
+        System.out.printf("embedded backend at %s with %d cities, %d restaurants, %d dishes, loaded in %d s%n",
+                baseUrl, data.cities().size(), data.restaurants(), data.dishes(),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+    }
+
+    private List<SyntheticData.CitySeed> remoteCities() throws Exception {
+        List<SyntheticData.CitySeed> seeds = new ArrayList<>();
+        for (int page = 0; ; page++) {
+            JsonNode body = objectMapper.readTree(get("/api/city?size=500&page=" + page).body());
+            for (JsonNode name : body.get("data"))
+                seeds.add(new SyntheticData.CitySeed(seeds.size() + 1, name.asText(), new int[0]));
+            if (page + 1 >= body.get("totalPages").asInt())
+                return seeds;
+        }
+    }
+
+    private void importRemote(SyntheticData data) throws Exception {
+        long started = System.nanoTime();
+        importNdjson("/api/restaurant/import", out -> data.writeRestaurants(out, objectMapper));
+        importNdjson("/api/dish/import", out -> data.writeDishes(out, objectMapper));
+        System.out.printf("imported %d restaurants and %d dishes into %s in %d s%n", data.restaurants(),
+                data.dishes(), baseUrl, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+    }
+
+    private void importNdjson(String path, Consumer<Writer> body) throws Exception {
+        Path file = Files.createTempFile("ratefood-import", ".ndjson");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                body.accept(out);
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                            .header("Content-Type", "application/x-ndjson")
+                            .POST(HttpRequest.BodyPublishers.ofFile(file))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            String[] events = response.body().split("\n");
+            System.out.println(path + ": " + events[events.length - 1]);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // POST /api/dish looks the restaurant up by name alone, so writes only target names that are unique
+    private void rememberRestaurants(SyntheticData data) {
+        Map<Long, Integer> cityOrdinal = new HashMap<>();
+        for (int c = 0; c < data.cities().size(); c++)
+            cityOrdinal.put(data.cities().get(c).id(), c);
+        Map<String, Integer> cityOfName = new HashMap<>();
+        data.generate(restaurant -> cityOfName.merge(restaurant.getName(),
+                cityOrdinal.get(restaurant.getCity().getId()), (a, b) -> -1), dish -> {
+        });
+        restaurantsByCity = new ArrayList<>();
+        uniqueRestaurants = new ArrayList<>();
+        for (int c = 0; c < data.cities().size(); c++)
+            restaurantsByCity.add(new ArrayList<>());
+        cityOfName.forEach((name, city) -> {
+            if (city >= 0) {
+                restaurantsByCity.get(city).add(name);
+                uniqueRestaurants.add(name);
+            }
+        });
+    }
+
+    void run() throws InterruptedException {
+        int concurrency = Integer.parseInt(args.get("concurrency"));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(args.get("warmup")));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(args.get("duration")));
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        System.out.printf("running %d clients against %s, %d s warmup, %d s measured, mix %s%n", concurrency,
+                baseUrl, warmupNanos / 1_000_000_000, durationNanos / 1_000_000_000, args.get("mix"));
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                clients.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        Operation operation = mix[random.nextInt(mix.length)];
+                        boolean ok = execute(operation, random);
+                        long done = System.nanoTime();
+                        if (now >= measureFrom) {
+                            latencies.get(operation).recordValue(
+                                    Math.min(HIGHEST_MICROS, TimeUnit.NANOSECONDS.toMicros(done - now)));
+                            if (!ok)
+                                errors.get(operation).increment();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private boolean execute(Operation operation, Random random) {
+        int city = pickCity(random);
+        String cityName = encode(cities.get(city));
+        int page = random.nextInt(3);
+        try {
+            HttpResponse<?> response = switch (operation) {
+                case DISH_LISTING -> get("/api/dish/" + cityName + "?page=" + page + "&size=20");
+                case RESTAURANT_LISTING -> get("/api/restaurant/" + cityName + "?page=" + page + "&size=20");
+                case CITY_LISTING -> get("/api/city?page=" + random.nextInt(20) + "&size=10");
+                case DISH_SEARCH -> get("/api/dish/" + cityName + "?size=20&name="
+                        + encode(SyntheticData.skewedPick(random, SyntheticData.DISH_WORDS).toLowerCase()));
+                case RESTAURANT_SEARCH -> get("/api/restaurant/" + cityName + "?size=20&name="
+                        + encode(SyntheticData.skewedPick(random, SyntheticData.RESTAURANT_WORDS).toLowerCase()));
+                case CITY_SEARCH -> {
+                    String name = cities.get(random.nextInt(cities.size()));
+                    yield get("/api/city?size=10&name=" + encode(name.substring(0, Math.min(3, name.length()))));
+                }
+                case CREATE_DISH -> createDish(city, random);
+            };
+            statuses.computeIfAbsent(response.statusCode(), s -> new LongAdder()).increment();
+            return response.statusCode() < 400;
+        } catch (IOException e) {
+            statuses.computeIfAbsent(-1, s -> new LongAdder()).increment();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private HttpResponse<?> createDish(int city, Random random) throws IOException, InterruptedException {
+        List<String> restaurants = restaurantsByCity.get(city);
+        if (restaurants.isEmpty())
+            restaurants = uniqueRestaurants;
+        String body = objectMapper.createObjectNode()
+                .put("name", "Load test " + SyntheticData.skewedPick(random, SyntheticData.DISH_WORDS))
+                .put("restaurant", restaurants.get(random.nextInt(restaurants.size())))
+                .put("description", "created by the load test")
+                .toString();
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/dish"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private int pickCity(Random random) {
+        int index = Arrays.binarySearch(cityTraffic, random.nextDouble());
+        return Math.min(cities.size() - 1, index < 0 ? -index - 1 : index);
+    }
+
+    void report(PrintStream out) throws IOException {
+        double seconds = Double.parseDouble(args.get("duration"));
+        out.printf("%n%-20s %9s %7s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "errors", "ops/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = new Histogram(HIGHEST_MICROS, 3);
+        long totalErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0)
+                continue;
+            total.add(histogram);
+            totalErrors += errors.get(operation).sum();
+            line(out, operation.name().toLowerCase(), histogram, errors.get(operation).sum(), seconds);
+        }
+        line(out, "total", total, totalErrors, seconds);
+        out.println("status codes: " + new TreeMap<>(statuses));
+
+        String directory = args.get("histograms");
+        if (!directory.isEmpty()) {
+            Files.createDirectories(Path.of(directory));
+            for (Operation operation : Operation.values()) {
+                try (PrintStream file = new PrintStream(Files.newOutputStream(
+                        Path.of(directory, operation.name().toLowerCase() + ".hgrm")))) {
+                    latencies.get(operation).outputPercentileDistribution(file, 1000.0);
+                }
+            }
+        }
+    }
+
+    private static void line(PrintStream out, String name, Histogram histogram, long errors, double seconds) {
+        out.printf("%-20s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(), errors,
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    void close() {
+        if (embedded != null)
+            embedded.close();
+    }
+
+    // each operation kind gets its share of the slots, spread over the operations of that kind
+    private static Operation[] parseMix(String mix) {
+        List<Operation> slots = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            int weight = Integer.parseInt(pair[1]);
+            List<Operation> kind = Arrays.stream(Operation.values()).filter(o -> o.kind.equals(pair[0])).toList();
+            if (kind.isEmpty())
+                throw new IllegalArgumentException("unknown request kind " + pair[0] + " in mix " + mix);
+            for (int i = 0; i < weight * kind.size(); i++)
+                slots.add(kind.get(i % kind.size()));
+        }
+        return slots.toArray(new Operation[0]);
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] sums = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++)
+            sums[i] = sum += weights[i];
+        return sums;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,73 @@
+package com.ratefood.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.ratefood.app.converter.DishConverter;
+import com.ratefood.app.dto.response.DishResponseDTO;
+import com.ratefood.app.dto.response.PageResponseDTO;
+import com.ratefood.app.entity.Dish;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization time of one dish listing page as JSON, plain CBOR and CBOR with stringref, the format
+ * served for {@code Accept: application/cbor}. Payload sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadBenchmark {
+
+    @Param({"20", "200"})
+    public int pageSize;
+
+    @Param({"json", "cbor", "cbor-stringref"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private PageResponseDTO<List<DishResponseDTO>> page;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = switch (format) {
+            case "json" -> new ObjectMapper();
+            case "cbor" -> new CBORMapper();
+            case "cbor-stringref" ->
+                    new CBORMapper(CBORFactory.builder().enable(CBORGenerator.Feature.STRINGREF).build());
+            default -> throw new IllegalArgumentException(format);
+        };
+        DishConverter dishConverter = new DishConverter();
+        List<DishResponseDTO> dishes = new ArrayList<>(pageSize);
+        for (Dish dish : new SyntheticData(1, Math.max(1, pageSize / 10), 10, 42).dishEntities(pageSize))
+            dishes.add(dishConverter.fromDishtoDishResponseDTO(dish));
+        page = new PageResponseDTO<>();
+        page.setData(dishes);
+        page.setTotalPages(10);
+        page.setTotalElements(pageSize * 10);
+        page.setCurrentPage(0);
+        System.out.printf("%n%s page of %d dishes: %d bytes%n", format, pageSize, serialize().length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,35 @@
+package com.ratefood.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the city rows seeded by the backend's schema.sql, so an embedded database can hold the same
+ * cities as a real one.
+ */
+public final class SeedCities {
+
+    // (id,	'name',	'{pincode,...}') as written by the Adminer dump
+    private static final Pattern ROW = Pattern.compile("\\((\\d+),\\s*'((?:[^']|'')*)',\\s*'\\{([0-9,]*)}'\\)");
+
+    private SeedCities() {
+    }
+
+    public static List<SyntheticData.CitySeed> read(Path schema) throws IOException {
+        List<SyntheticData.CitySeed> cities = new ArrayList<>();
+        Matcher matcher = ROW.matcher(Files.readString(schema));
+        while (matcher.find()) {
+            int[] pincodes = matcher.group(3).isEmpty() ? new int[0]
+                    : Arrays.stream(matcher.group(3).split(",")).mapToInt(Integer::parseInt).toArray();
+            cities.add(new SyntheticData.CitySeed(Long.parseLong(matcher.group(1)),
+                    matcher.group(2).replace("''", "'"), pincodes));
+        }
+        return cities;
+    }
+}
@@ -0,0 +1,257 @@
+package com.ratefood.benchmark;
+
+import com.ratefood.app.index.CitySnapshotGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to first request of the packaged backend: from launching the JVM to the first 200 from
+ * {@code /api/city}, on an H2 file database seeded with the cities of schema.sql. The jar is extracted
+ * once to the layout class-data sharing needs. For each JVM mode and startup variant the first run starts
+ * from an empty database, the following runs restart on the data it left.
+ * <ul>
+ *     <li>modes: {@code default}, {@code cds} (a training run writes a dynamic CDS archive that the
+ *     measured runs map), {@code aot} (needs a jar built with {@code mvn -Paot package})</li>
+ *     <li>variants: {@code baseline} re-runs the seed and lets Hibernate diff the schema on every start,
+ *     {@code fast} is the fast-start profile: seed gated by checksum, cities from a snapshot generated
+ *     the way the build generates it, no schema diff</li>
+ * </ul>
+ * Arguments are {@code key=value} pairs, see {@link #DEFAULTS}.
+ */
+public class StartupBenchmark {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("jar", "../backend/target/app-0.0.1-SNAPSHOT.jar"); // built with mvn package
+        DEFAULTS.put("schema", "../backend/src/main/resources/schema.sql");
+        DEFAULTS.put("dir", "target/startup");
+        DEFAULTS.put("modes", "default,cds");    // aot needs the jar built with -Paot
+        DEFAULTS.put("variants", "baseline,fast");
+        DEFAULTS.put("runs", "4");               // the first one on an empty database
+        DEFAULTS.put("timeout", "300");          // seconds per start
+    }
+
+    private static final String MAIN_CLASS = "com.ratefood.app.rateFood";
+
+    private final Map<String, String> args;
+    private final Path dir;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+    private String classpath;
+    private Path seed;
+    private Path snapshot;
+
+    StartupBenchmark(Map<String, String> args) {
+        this.args = args;
+        this.dir = Path.of(args.get("dir")).toAbsolutePath();
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : argv) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2 || !DEFAULTS.containsKey(pair[0])) {
+                System.err.println("usage: StartupBenchmark [key=value ...], keys and defaults: " + DEFAULTS);
+                System.exit(2);
+            }
+            args.put(pair[0], pair[1]);
+        }
+        StartupBenchmark benchmark = new StartupBenchmark(args);
+        benchmark.prepare();
+        List<String> results = new ArrayList<>();
+        for (String mode : args.get("modes").split(","))
+            for (String variant : args.get("variants").split(","))
+                results.add(benchmark.measure(mode.trim(), variant.trim()));
+        System.out.printf("%n%-8s %-9s %10s %10s %10s%n", "mode", "variant", "cold ms", "warm p50", "warm min");
+        results.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    void prepare() throws Exception {
+        Files.createDirectories(dir);
+        Path app = dir.resolve("app");
+        deleteRecursively(app);
+        exec(List.of(java(), "-Djarmode=tools", "-jar", Path.of(args.get("jar")).toAbsolutePath().toString(),
+                "extract", "--destination", app.toString()), dir.resolve("extract.log"));
+        Path jar;
+        try (Stream<Path> files = Files.list(app)) {
+            jar = files.filter(file -> file.toString().endsWith(".jar")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("nothing extracted from " + args.get("jar")));
+        }
+        // the boot jar only carries the Postgres driver
+        Path h2 = Path.of(org.h2.Driver.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        classpath = jar + java.io.File.pathSeparator + h2;
+        seed = writeSeed(SeedCities.read(Path.of(args.get("schema"))));
+        // what the build packs for schema.sql, keyed by the checksum of the script the runs seed with
+        snapshot = dir.resolve("city-snapshot.bin");
+        CitySnapshotGenerator.generate(Path.of(args.get("schema")), List.of(seed), snapshot);
+    }
+
+    String measure(String mode, String variant) throws Exception {
+        Path db = dir.resolve("db-" + mode + "-" + variant);
+        deleteRecursively(db);
+        Files.createDirectories(db);
+        List<String> jvm = new ArrayList<>();
+        switch (mode) {
+            case "default" -> {
+            }
+            case "cds" -> {
+                Path archive = dir.resolve("app.jsa");
+                Files.deleteIfExists(archive);
+                // the training run stops once the context is refreshed and dumps the classes it loaded
+                List<String> training = new ArrayList<>(List.of("-XX:ArchiveClassesAtExit=" + archive,
+                        "-Dspring.context.exit=onRefresh"));
+                Path trainingDb = dir.resolve("db-cds-training");
+                deleteRecursively(trainingDb);
+                exec(command(training, trainingDb, variant, true, freePort()), dir.resolve("cds-training.log"));
+                jvm.add("-XX:SharedArchiveFile=" + archive);
+            }
+            case "aot" -> jvm.add("-Dspring.aot.enabled=true");
+            default -> throw new IllegalArgumentException("unknown mode " + mode);
+        }
+        int runs = Integer.parseInt(args.get("runs"));
+        long cold = 0;
+        long[] warm = new long[Math.max(0, runs - 1)];
+        for (int run = 0; run < runs; run++) {
+            long millis = timeToFirstRequest(command(jvm, db, variant, run == 0, freePort()),
+                    dir.resolve(mode + "-" + variant + "-" + run + ".log"));
+            System.out.printf("%s %s run %d: %d ms%n", mode, variant, run, millis);
+            if (run == 0)
+                cold = millis;
+            else
+                warm[run - 1] = millis;
+        }
+        Arrays.sort(warm);
+        return String.format("%-8s %-9s %10d %10s %10s", mode, variant, cold,
+                warm.length == 0 ? "-" : Long.toString(warm[warm.length / 2]),
+                warm.length == 0 ? "-" : Long.toString(warm[0]));
+    }
+
+    private List<String> command(List<String> jvm, Path db, String variant, boolean cold, int port) {
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        command.addAll(jvm);
+        command.addAll(List.of("-cp", classpath, MAIN_CLASS,
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:file:" + db.resolve("ratefood")
+                        + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.sql.init.mode=always",
+                "--spring.sql.init.schema-locations=file:" + seed,
+                "--spring.main.banner-mode=off"));
+        if (variant.equals("fast")) {
+            // the first start has to create the tables, later ones trust them
+            command.add("--spring.jpa.hibernate.ddl-auto=" + (cold ? "update" : "none"));
+            if (!cold)
+                command.add("--spring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false");
+            command.add("--ratefood.seed.checksum=true");
+            command.add("--ratefood.city.snapshot=file:" + snapshot);
+        } else {
+            command.add("--spring.jpa.hibernate.ddl-auto=update");
+            command.add("--ratefood.seed.checksum=false");
+            command.add("--ratefood.city.snapshot=");
+        }
+        return command;
+    }
+
+    private long timeToFirstRequest(List<String> command, Path log) throws Exception {
+        int port = Integer.parseInt(command.stream().filter(arg -> arg.startsWith("--server.port="))
+                .findFirst().orElseThrow().substring("--server.port=".length()));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/city"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(args.get("timeout")));
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive())
+                    throw new IllegalStateException("backend exited with " + process.exitValue() + ", see " + log);
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200)
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(20);
+            }
+            throw new IllegalStateException("no response within " + args.get("timeout") + " s, see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(60, TimeUnit.SECONDS))
+                process.destroyForcibly().waitFor();
+        }
+    }
+
+    // the city table as schema.sql creates it, rows merged so the script can run on every start
+    private Path writeSeed(List<SyntheticData.CitySeed> cities) throws IOException {
+        Path script = dir.resolve("seed.sql");
+        try (Writer out = Files.newBufferedWriter(script, StandardCharsets.UTF_8)) {
+            out.write("CREATE TABLE IF NOT EXISTS city (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "name VARCHAR(255), pincode INTEGER ARRAY);\n");
+            for (SyntheticData.CitySeed city : cities) {
+                StringBuilder pincodes = new StringBuilder();
+                for (int pincode : city.pincodes())
+                    pincodes.append(pincodes.isEmpty() ? "" : ",").append(pincode);
+                out.write("MERGE INTO city (id, name, pincode) KEY (id) VALUES (" + city.id() + ", '"
+                        + city.name().replace("'", "''") + "', ARRAY[" + pincodes + "]);\n");
+            }
+        }
+        System.out.printf("seed script with %d cities at %s%n", cities.size(), script);
+        return script;
+    }
+
+    private static void exec(List<String> command, Path log) throws Exception {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        if (process.waitFor() != 0)
+            throw new IllegalStateException(String.join(" ", command.subList(0, 3)) + "... failed, see " + log);
+    }
+
+    private static String java() {
+        return ProcessHandle.current().info().command().orElse("java");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path))
+            return;
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
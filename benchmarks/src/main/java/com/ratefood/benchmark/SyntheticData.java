@@ -0,0 +1,316 @@
+package com.ratefood.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ratefood.app.entity.City;
+import com.ratefood.app.entity.Dish;
+import com.ratefood.app.entity.Restaurant;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Deterministic dataset of restaurants and dishes spread over a list of cities, either generated or the
+ * ones seeded by schema.sql. With {@code skew} 0 every city gets {@code restaurantsPerCity} restaurants,
+ * otherwise city sizes follow a Zipf law with that exponent around the same average, so the first cities
+ * are the large ones. Restaurants cluster around a per-city center, and names and tags are drawn from
+ * small skewed word lists so name searches hit realistic numbers of rows. The same seed always yields
+ * the same rows.
+ */
+public class SyntheticData {
+
+    private static final String[] SYLLABLES = {"ka", "ra", "pur", "na", "gar", "ban", "di", "la", "ma", "sha",
+            "hal", "ko", "ta", "vi", "ja", "ner", "abad", "ur", "si", "pa"};
+    private static final String[] CITY_PREFIXES = {"New ", "Old ", "North ", "South ", "Port ", "Upper ", "", "", "", ""};
+    static final String[] RESTAURANT_WORDS = {"Spice", "Royal", "Green", "Golden", "Urban", "Tandoor",
+            "Coastal", "Masala", "Saffron", "Lotus", "Curry", "Street"};
+    private static final String[] RESTAURANT_KINDS = {"Kitchen", "Dhaba", "Cafe", "House", "Bistro", "Grill"};
+    private static final String[] CUISINES = {"North Indian", "South Indian", "Chinese", "Mughlai", "Street Food",
+            "Continental"};
+    static final String[] DISH_WORDS = {"Paneer", "Butter", "Chicken", "Masala", "Dal", "Tikka", "Veg",
+            "Mutton", "Aloo", "Gobi", "Egg", "Fish", "Kadai", "Malai", "Chilli", "Garlic"};
+    private static final String[] DISH_KINDS = {"Curry", "Biryani", "Naan", "Roll", "Dosa", "Thali", "Kebab",
+            "Pulao", "Momos", "Paratha"};
+    private static final String[] TAGS = {"veg", "non-veg", "spicy", "bestseller", "sweet", "new", "vegan",
+            "gluten-free"};
+    // spread of restaurants around their city center, in degrees
+    private static final double CITY_RADIUS = 0.05;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final List<CitySeed> cities;
+    private final int[] restaurantCounts;
+    private final int dishesPerRestaurant;
+    private final long seed;
+
+    public SyntheticData(int cities, int restaurantsPerCity, int dishesPerRestaurant, long seed) {
+        this(generatedCities(cities, seed), restaurantsPerCity, dishesPerRestaurant, 0, seed);
+    }
+
+    public SyntheticData(List<CitySeed> cities, int restaurantsPerCity, int dishesPerRestaurant, double skew, long seed) {
+        this.cities = cities;
+        this.dishesPerRestaurant = dishesPerRestaurant;
+        this.seed = seed;
+        restaurantCounts = new int[cities.size()];
+        double[] weights = zipfWeights(cities.size(), skew);
+        for (int c = 0; c < cities.size(); c++)
+            restaurantCounts[c] = Math.max(1, (int) Math.round(weights[c] * restaurantsPerCity * cities.size()));
+    }
+
+    /**
+     * A city of the dataset; {@code pincodes} may be empty.
+     */
+    public record CitySeed(long id, String name, int[] pincodes) {
+    }
+
+    public List<CitySeed> cities() {
+        return cities;
+    }
+
+    public int restaurantsIn(int city) {
+        return restaurantCounts[city];
+    }
+
+    public long restaurants() {
+        long total = 0;
+        for (int count : restaurantCounts)
+            total += count;
+        return total;
+    }
+
+    public long dishes() {
+        return restaurants() * dishesPerRestaurant;
+    }
+
+    public String cityName(int city) {
+        return cities.get(city).name();
+    }
+
+    /**
+     * Share of each of {@code n} ranks under a Zipf law with exponent {@code skew}, summing to 1.
+     */
+    public static double[] zipfWeights(int n, double skew) {
+        double[] weights = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++)
+            sum += weights[k] = 1 / Math.pow(k + 1, skew);
+        for (int k = 0; k < n; k++)
+            weights[k] /= sum;
+        return weights;
+    }
+
+    /**
+     * Generates every restaurant, in id order, each followed by its dishes. Ids start at 1 and the
+     * restaurants carry their city.
+     */
+    public void generate(Consumer<Restaurant> restaurants, Consumer<Dish> dishes) {
+        Random random = new Random(seed);
+        long restaurantId = 0;
+        long dishId = 0;
+        for (int c = 0; c < cities.size(); c++) {
+            CitySeed seedCity = cities.get(c);
+            City city = new City();
+            city.setId(seedCity.id());
+            city.setName(seedCity.name());
+            Random centers = new Random(seed ^ seedCity.id() * 31);
+            double latitude = 8 + centers.nextDouble() * 25;
+            double longitude = 68 + centers.nextDouble() * 28;
+            for (int r = 0; r < restaurantCounts[c]; r++) {
+                Restaurant restaurant = restaurant(random, ++restaurantId, city, latitude, longitude);
+                restaurants.accept(restaurant);
+                for (int d = 0; d < dishesPerRestaurant; d++)
+                    dishes.accept(dish(random, ++dishId, restaurant));
+            }
+        }
+    }
+
+    /**
+     * Writes the dataset through plain batched inserts with the generated ids. Tags and pincodes are bound
+     * as Java arrays, which the embedded H2 database takes as SQL arrays.
+     */
+    public void insert(JdbcTemplate jdbcTemplate) {
+        List<Object[]> rows = new ArrayList<>(cities.size());
+        for (CitySeed city : cities) {
+            Integer[] pincodes = new Integer[city.pincodes().length];
+            for (int i = 0; i < pincodes.length; i++)
+                pincodes[i] = city.pincodes()[i];
+            rows.add(new Object[]{city.id(), city.name(), pincodes});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO city (id, name, pincode) VALUES (?, ?, ?)", rows);
+
+        List<Object[]> restaurants = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> dishes = new ArrayList<>(BATCH_SIZE);
+        generate(restaurant -> {
+            restaurants.add(new Object[]{restaurant.getId(), restaurant.getName(), restaurant.getCuisine(),
+                    restaurant.getDescription(), restaurant.getRating(), restaurant.getTags().toArray(),
+                    restaurant.getImage(), restaurant.getLatitude(), restaurant.getLongitude(),
+                    restaurant.getCity().getId()});
+            if (restaurants.size() == BATCH_SIZE)
+                flushRestaurants(jdbcTemplate, restaurants);
+        }, dish -> {
+            dishes.add(new Object[]{dish.getId(), dish.getName(), dish.getDescription(),
+                    dish.getTags().toArray(), dish.getImage(), dish.getUpvote(), dish.getDownvote(),
+                    dish.getRating(), dish.getRestaurant().getId()});
+            if (dishes.size() == BATCH_SIZE) {
+                // the dishes may reference restaurants still waiting in their batch
+                flushRestaurants(jdbcTemplate, restaurants);
+                flushDishes(jdbcTemplate, dishes);
+            }
+        });
+        flushRestaurants(jdbcTemplate, restaurants);
+        flushDishes(jdbcTemplate, dishes);
+    }
+
+    /**
+     * Writes the restaurants in the NDJSON format of {@code POST /api/restaurant/import}.
+     */
+    public void writeRestaurants(Writer out, ObjectMapper objectMapper) {
+        generate(restaurant -> {
+            ObjectNode line = objectMapper.createObjectNode()
+                    .put("name", restaurant.getName())
+                    .put("city", restaurant.getCity().getName())
+                    .put("cuisine", restaurant.getCuisine())
+                    .put("description", restaurant.getDescription())
+                    .put("latitude", restaurant.getLatitude())
+                    .put("longitude", restaurant.getLongitude());
+            restaurant.getTags().forEach(line.putArray("tags")::add);
+            writeLine(out, objectMapper, line);
+        }, dish -> {
+        });
+    }
+
+    /**
+     * Writes the dishes in the NDJSON format of {@code POST /api/dish/import}.
+     */
+    public void writeDishes(Writer out, ObjectMapper objectMapper) {
+        generate(restaurant -> {
+        }, dish -> {
+            ObjectNode line = objectMapper.createObjectNode()
+                    .put("name", dish.getName())
+                    .put("restaurant", dish.getRestaurant().getName())
+                    .put("city", dish.getRestaurant().getCity().getName())
+                    .put("description", dish.getDescription());
+            dish.getTags().forEach(line.putArray("tags")::add);
+            writeLine(out, objectMapper, line);
+        });
+    }
+
+    /**
+     * The first {@code count} dishes of the dataset as detached entities, each with its restaurant set.
+     */
+    public List<Dish> dishEntities(int count) {
+        List<Dish> result = new ArrayList<>(count);
+        generate(restaurant -> {
+        }, dish -> {
+            if (result.size() < count)
+                result.add(dish);
+        });
+        return result;
+    }
+
+    private static List<CitySeed> generatedCities(int count, long seed) {
+        List<CitySeed> cities = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            Random random = new Random(seed ^ index);
+            StringBuilder name = new StringBuilder(CITY_PREFIXES[random.nextInt(CITY_PREFIXES.length)]);
+            String base = SYLLABLES[random.nextInt(SYLLABLES.length)] + SYLLABLES[random.nextInt(SYLLABLES.length)]
+                    + SYLLABLES[random.nextInt(SYLLABLES.length)];
+            name.append(Character.toUpperCase(base.charAt(0))).append(base, 1, base.length());
+            name.append(' ').append(index + 1);
+            cities.add(new CitySeed(index + 1, name.toString(), new int[]{110000 + index}));
+        }
+        return cities;
+    }
+
+    private Restaurant restaurant(Random random, long id, City city, double latitude, double longitude) {
+        return Restaurant.builder()
+                .id(id)
+                .name(skewedPick(random, RESTAURANT_WORDS) + " " + pick(random, RESTAURANT_KINDS) + " " + id)
+                .cuisine(skewedPick(random, CUISINES))
+                .description("Synthetic restaurant " + id)
+                .rating(random.nextInt(51) / 10f)
+                .tags(tags(random))
+                .latitude(coordinate(latitude + random.nextGaussian() * CITY_RADIUS))
+                .longitude(coordinate(longitude + random.nextGaussian() * CITY_RADIUS))
+                .city(city)
+                .build();
+    }
+
+    private Dish dish(Random random, long id, Restaurant restaurant) {
+        int upvote = random.nextInt(200);
+        int downvote = random.nextInt(50);
+        return Dish.builder()
+                .id(id)
+                .name(skewedPick(random, DISH_WORDS) + " " + skewedPick(random, DISH_WORDS) + " "
+                        + skewedPick(random, DISH_KINDS))
+                .description("Synthetic dish " + id)
+                .upvote(upvote)
+                .downvote(downvote)
+                .rating(upvote + downvote == 0 ? 0 : 5f * upvote / (upvote + downvote))
+                .tags(tags(random))
+                .restaurant(restaurant)
+                .build();
+    }
+
+    private static void flushRestaurants(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        if (rows.isEmpty())
+            return;
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO restaurant (id, name, cuisine, description, rating, tags, image, latitude, longitude, city_id)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, rows);
+        rows.clear();
+    }
+
+    private static void flushDishes(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        if (rows.isEmpty())
+            return;
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO dish (id, name, description, tags, image, upvote, downvote, rating, restaurant_id)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, rows);
+        rows.clear();
+    }
+
+    private static void writeLine(Writer out, ObjectMapper objectMapper, ObjectNode line) {
+        try {
+            out.write(objectMapper.writeValueAsString(line));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> tags(Random random) {
+        List<String> tags = new ArrayList<>(2);
+        tags.add(skewedPick(random, TAGS));
+        if (random.nextBoolean()) {
+            String second = skewedPick(random, TAGS);
+            if (!second.equals(tags.get(0)))
+                tags.add(second);
+        }
+        return tags;
+    }
+
+    private static BigDecimal coordinate(double value) {
+        return BigDecimal.valueOf(value).setScale(6, RoundingMode.HALF_UP);
+    }
+
+    private static String pick(Random random, String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+
+    // earlier words are picked more often, the first about as often as the last four together
+    static String skewedPick(Random random, String[] words) {
+        double u = random.nextDouble();
+        return words[(int) (u * u * words.length)];
+    }
+}
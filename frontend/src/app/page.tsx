@@ -231,7 +231,7 @@ export default function App() {
         headers: {
           'Content-Type': 'application/json',
         },
-        body: JSON.stringify(newDish)
+        body: JSON.stringify({ ...newDish, city: selectedCity })
       });
 
       if (!response.ok) {